@@ -17,21 +17,28 @@
 package net.fabricmc.loader.impl;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -62,8 +69,10 @@ import net.fabricmc.loader.impl.metadata.DependencyOverrides;
 import net.fabricmc.loader.impl.metadata.EntrypointMetadata;
 import net.fabricmc.loader.impl.metadata.LoaderModMetadata;
 import net.fabricmc.loader.impl.metadata.VersionOverrides;
+import net.fabricmc.loader.impl.transformer.EnvironmentStrippingIndex;
 import net.fabricmc.loader.impl.util.DefaultLanguageAdapter;
 import net.fabricmc.loader.impl.util.ExceptionUtil;
+import net.fabricmc.loader.impl.util.HashUtil;
 import net.fabricmc.loader.impl.util.LoaderUtil;
 import net.fabricmc.loader.impl.util.SystemProperties;
 import net.fabricmc.loader.impl.util.log.Log;
@@ -81,7 +90,13 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 	public static final String CACHE_DIR_NAME = ".fabric"; // relative to game dir
 	private static final String PROCESSED_MODS_DIR_NAME = "processedMods"; // relative to cache dir
 	public static final String REMAPPED_JARS_DIR_NAME = "remappedJars"; // relative to cache dir
+	public static final String CLASS_CACHE_DIR_NAME = "classCache"; // relative to cache dir
+	public static final String CLASS_LIST_DIR_NAME = "classList"; // relative to cache dir
+	public static final String BAKED_JARS_DIR_NAME = "bakedJars"; // relative to cache dir
+	private static final String ENVIRONMENT_INDEX_DIR_NAME = "environmentIndex"; // relative to cache dir
 	private static final String TMP_DIR_NAME = "tmp"; // relative to cache dir
+	private static final String DISCOVERY_INDEX_DIR_NAME = "discoveryIndex"; // relative to cache dir
+	private static final String RESOLUTION_CACHE_FILE_NAME = "resolutionCache.bin"; // relative to cache dir
 
 	protected final Map<String, ModContainerImpl> modMap = new HashMap<>();
 	private List<ModCandidateImpl> modCandidates;
@@ -90,6 +105,9 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 	private final Map<String, LanguageAdapter> adapterMap = new HashMap<>();
 	private final EntrypointStorage entrypointStorage = new EntrypointStorage();
 	private final AccessWidener accessWidener = new AccessWidener();
+	private Set<String> accessWidenerTargets = Collections.emptySet();
+	private String accessWidenerHash;
+	private EnvironmentStrippingIndex environmentStrippingIndex;
 
 	private final ObjectShare objectShare = new ObjectShareImpl();
 
@@ -208,6 +226,14 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 		// discover mods
 
 		ModDiscoverer discoverer = new ModDiscoverer(versionOverrides, depOverrides);
+		discoverer.setSpillDir(gameDir.resolve(CACHE_DIR_NAME).resolve(TMP_DIR_NAME));
+		discoverer.setStoreDir(gameDir.resolve(CACHE_DIR_NAME).resolve(PROCESSED_MODS_DIR_NAME)); // shared with the extraction below
+
+		if (System.getProperty(SystemProperties.DISABLE_DISCOVERY_INDEX) == null) { // per environment, the results depend on it and client and server may share the game dir
+			String fileName = getEnvironmentType().name().toLowerCase(Locale.ENGLISH).concat(".bin");
+			discoverer.setIndexFile(gameDir.resolve(CACHE_DIR_NAME).resolve(DISCOVERY_INDEX_DIR_NAME).resolve(fileName));
+		}
+
 		discoverer.addCandidateFinder(new ClasspathModCandidateFinder());
 		discoverer.addCandidateFinder(new DirectoryModCandidateFinder(getModsDirectory0(), remapRegularMods));
 		discoverer.addCandidateFinder(new ArgumentModCandidateFinder(remapRegularMods));
@@ -227,7 +253,8 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 
 		// resolve mods
 
-		modCandidates = ModResolver.resolve(modCandidates, getEnvironmentType(), envDisabledMods);
+		Path resolutionCacheFile = System.getProperty(SystemProperties.DISABLE_RESOLUTION_CACHE) == null ? gameDir.resolve(CACHE_DIR_NAME).resolve(RESOLUTION_CACHE_FILE_NAME) : null;
+		modCandidates = ModResolver.resolve(modCandidates, getEnvironmentType(), envDisabledMods, resolutionCacheFile);
 
 		dumpModList(modCandidates);
 		dumpNonFabricMods(discoverer.getNonFabricMods());
@@ -267,20 +294,28 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 			}
 		}
 
+		// extract nested mods, in parallel since they are independent
+
+		extractNestedMods(modCandidates, outputdir);
+
 		// add mods
 
 		for (ModCandidateImpl mod : modCandidates) {
-			if (!mod.hasPath() && !mod.isBuiltin()) {
-				try {
-					mod.setPaths(Collections.singletonList(mod.copyToDir(outputdir, false)));
-				} catch (IOException e) {
-					throw new RuntimeException("Error extracting mod "+mod, e);
-				}
-			}
-
 			addMod(mod);
 		}
 
+		// index the classes using environment annotations, on a dedicated server almost none do
+
+		List<Path> codeSources = new ArrayList<>();
+
+		for (ModContainerImpl mod : mods) {
+			if (!mod.getMetadata().getId().equals(MOD_ID) && !mod.getMetadata().getType().equals("builtin")) {
+				codeSources.addAll(mod.getCodeSourcePaths());
+			}
+		}
+
+		environmentStrippingIndex = EnvironmentStrippingIndex.create(codeSources, cacheDir.resolve(ENVIRONMENT_INDEX_DIR_NAME));
+
 		modCandidates = null;
 	}
 
@@ -297,6 +332,29 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 		Log.warn(LogCategory.GENERAL, "Found %d non-fabric mod%s:%s", modsCount, modsCount != 1 ? "s" : "", outputText);
 	}
 
+	private static void extractNestedMods(List<ModCandidateImpl> mods, Path outputDir) {
+		List<ModCandidateImpl> pending = mods.stream().filter(mod -> !mod.hasPath() && !mod.isBuiltin()).collect(Collectors.toList());
+		if (pending.isEmpty()) return;
+
+		long startTime = System.nanoTime();
+		Map<ModCandidateImpl, Path> paths = new ConcurrentHashMap<>(pending.size());
+
+		pending.parallelStream().forEach(mod -> {
+			try {
+				paths.put(mod, mod.copyToDir(outputDir, false));
+			} catch (IOException e) {
+				throw new RuntimeException("Error extracting mod "+mod, e);
+			}
+		});
+
+		// only assign the paths now since setPaths drops the cached data other extractions may be sourcing from
+		for (ModCandidateImpl mod : pending) {
+			mod.setPaths(Collections.singletonList(paths.get(mod)));
+		}
+
+		Log.debug(LogCategory.GENERAL, "Extracted %d nested mods in %.1f ms", pending.size(), (System.nanoTime() - startTime) * 1e-6);
+	}
+
 	private void dumpModList(List<ModCandidateImpl> mods) {
 		StringBuilder modListText = new StringBuilder();
 
@@ -514,6 +572,7 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 
 	public void loadAccessWideners() {
 		AccessWidenerReader accessWidenerReader = new AccessWidenerReader(accessWidener);
+		MessageDigest digest = HashUtil.createDigest();
 
 		for (net.fabricmc.loader.api.ModContainer modContainer : getAllMods()) {
 			LoaderModMetadata modMetadata = (LoaderModMetadata) modContainer.getMetadata();
@@ -523,12 +582,22 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 			Path path = modContainer.findPath(accessWidener).orElse(null);
 			if (path == null) throw new RuntimeException(String.format("Missing accessWidener file %s from mod %s", accessWidener, modContainer.getMetadata().getId()));
 
-			try (BufferedReader reader = Files.newBufferedReader(path)) {
-				accessWidenerReader.read(reader, FabricLauncherBase.getLauncher().getTargetNamespace());
+			try {
+				byte[] data = Files.readAllBytes(path);
+				HashUtil.update(digest, modMetadata.getId());
+				digest.update(data);
+
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+					accessWidenerReader.read(reader, FabricLauncherBase.getLauncher().getTargetNamespace());
+				}
 			} catch (Exception e) {
 				throw new RuntimeException("Failed to read accessWidener file from mod " + modMetadata.getId(), e);
 			}
 		}
+
+		// immutable snapshot for the transformer's per-class lookups, the access widener doesn't change after this
+		accessWidenerTargets = Collections.unmodifiableSet(new HashSet<>(accessWidener.getTargets()));
+		accessWidenerHash = HashUtil.toHex(digest.digest());
 	}
 
 	public void prepareModInit(Path newRunDir, Object gameInstance) {
@@ -590,6 +659,27 @@ public final class FabricLoaderImpl extends net.fabricmc.loader.FabricLoader {
 		return accessWidener;
 	}
 
+	/**
+	 * @return the classes targeted by the access widener in dot notation, empty before the access wideners got loaded
+	 */
+	public Set<String> getAccessWidenerTargets() {
+		return accessWidenerTargets;
+	}
+
+	/**
+	 * @return digest of the content of all loaded access widener files, null before the access wideners got loaded
+	 */
+	public String getAccessWidenerHash() {
+		return accessWidenerHash;
+	}
+
+	/**
+	 * @return the environment stripping index for the mods' code sources, null before the mods got loaded
+	 */
+	public EnvironmentStrippingIndex getEnvironmentStrippingIndex() {
+		return environmentStrippingIndex;
+	}
+
 	/**
 	 * Sets the game instance. This is only used in 20w22a+ by the dedicated server and should not be called by anything else.
 	 */
@@ -0,0 +1,375 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import net.fabricmc.loader.impl.metadata.ModMetadataSerializer;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Persistent index of the discovery results for mod jars, avoiding opening unchanged jars and their nested jars.
+ *
+ * <p>Each root jar is keyed by its path, size, modification time and a hash of its tail, which holds the zip central
+ * directory with the CRCs of all entries. The index stores the parsed metadata for the jar and its nested mods in the
+ * {@link ModMetadataSerializer} format, captured before applying overrides so those still apply when restoring. Nested
+ * jars are shared between root jars like the deduplication during discovery, keyed by
+ * {@link ModCandidateImpl#getHash()}.
+ *
+ * <p>Mods not loading in the current environment are stored without their nested jars, so each environment has to use
+ * its own index file.
+ */
+final class DiscoveryIndex {
+	private static final int FORMAT_VERSION = 3;
+	private static final int TAIL_HASH_SIZE = 64 * 1024;
+
+	private final Path file;
+	private final Map<Path, RootEntry> roots;
+	private final Map<Long, NestedEntry> nestedJars;
+	private final Map<Path, RootEntry> usedRoots = new ConcurrentHashMap<>();
+	private volatile boolean modified;
+
+	static DiscoveryIndex load(Path file) {
+		Map<Path, RootEntry> roots = new HashMap<>();
+		Map<Long, NestedEntry> nestedJars = new HashMap<>();
+
+		try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) { // available() is exact
+			if (is.readInt() != FORMAT_VERSION || is.readInt() != ModMetadataSerializer.FORMAT_VERSION) throw new IOException("unsupported format version");
+
+			for (int i = 0, max = is.readInt(); i < max; i++) {
+				long hash = is.readLong();
+				String localPath = is.readUTF();
+				byte[] digest = readBytes(is);
+				byte[] metadata = readBytes(is);
+				nestedJars.put(hash, new NestedEntry(localPath, digest, metadata, readHashes(is)));
+			}
+
+			for (int i = 0, max = is.readInt(); i < max; i++) {
+				Path path = file.getFileSystem().getPath(is.readUTF());
+				Key key = new Key(is.readLong(), is.readLong(), is.readLong());
+				byte[] metadata = is.readBoolean() ? readBytes(is) : null;
+				roots.put(path, new RootEntry(key, metadata, readHashes(is)));
+			}
+		} catch (NoSuchFileException e) {
+			// first run
+		} catch (IOException | RuntimeException e) {
+			Log.debug(LogCategory.DISCOVERY, "Discarding unreadable discovery index %s: %s", file, e);
+			roots.clear();
+			nestedJars.clear();
+		}
+
+		return new DiscoveryIndex(file, roots, nestedJars);
+	}
+
+	private DiscoveryIndex(Path file, Map<Path, RootEntry> roots, Map<Long, NestedEntry> nestedJars) {
+		this.file = file;
+		this.roots = roots;
+		this.nestedJars = new ConcurrentHashMap<>(nestedJars);
+	}
+
+	/**
+	 * Compute the current key for a root jar.
+	 */
+	static Key computeKey(Path path) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		long size = attrs.size();
+		CRC32 crc = new CRC32();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			int len = (int) Math.min(size, TAIL_HASH_SIZE);
+			ByteBuffer buffer = ByteBuffer.allocate(len);
+			long pos = size - len;
+
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, pos + buffer.position()) < 0) throw new IOException("truncated file "+path);
+			}
+
+			buffer.flip();
+			crc.update(buffer.array(), 0, len);
+		}
+
+		return new Key(size, attrs.lastModifiedTime().toMillis(), crc.getValue());
+	}
+
+	/**
+	 * Look up the discovery result for a root jar.
+	 *
+	 * @return the entry or null if there is none or it is outdated
+	 */
+	RootEntry get(Path path, Key key) {
+		RootEntry ret = roots.get(path);
+		if (ret == null || !ret.key.equals(key)) return null;
+		if (!hasNestedJars(ret.nestedJars, new HashSet<>())) return null;
+
+		usedRoots.put(path, ret);
+
+		return ret;
+	}
+
+	private boolean hasNestedJars(long[] hashes, Set<Long> checked) {
+		for (long hash : hashes) {
+			if (!checked.add(hash)) continue;
+
+			NestedEntry entry = nestedJars.get(hash);
+			if (entry == null || !hasNestedJars(entry.nestedJars, checked)) return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get a nested jar referenced by a root entry returned from {@link #get}, which ensures its presence.
+	 */
+	NestedEntry getNestedJar(long hash) {
+		return nestedJars.get(hash);
+	}
+
+	void put(Path path, RootEntry entry) {
+		usedRoots.put(path, entry);
+		modified = true;
+	}
+
+	void putNestedJar(long hash, NestedEntry entry) {
+		if (!entry.equals(nestedJars.put(hash, entry))) modified = true;
+	}
+
+	/**
+	 * Write the index if it changed, keeping only the root jars used by this run and the nested jars they reference.
+	 */
+	void save() {
+		if (!modified && usedRoots.size() == roots.size()) return;
+
+		Map<Long, NestedEntry> usedNestedJars = new LinkedHashMap<>();
+		List<Long> queue = new ArrayList<>();
+
+		for (RootEntry entry : usedRoots.values()) {
+			for (long hash : entry.nestedJars) {
+				queue.add(hash);
+			}
+		}
+
+		while (!queue.isEmpty()) {
+			long hash = queue.remove(queue.size() - 1);
+			if (usedNestedJars.containsKey(hash)) continue;
+
+			NestedEntry entry = nestedJars.get(hash);
+			if (entry == null) continue; // incomplete, rejected by get
+
+			usedNestedJars.put(hash, entry);
+
+			for (long child : entry.nestedJars) {
+				queue.add(child);
+			}
+		}
+
+		Path tmpFile = null;
+
+		try {
+			Files.createDirectories(file.getParent());
+			tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+			try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+				os.writeInt(FORMAT_VERSION);
+				os.writeInt(ModMetadataSerializer.FORMAT_VERSION);
+				os.writeInt(usedNestedJars.size());
+
+				for (Map.Entry<Long, NestedEntry> e : usedNestedJars.entrySet()) {
+					NestedEntry entry = e.getValue();
+					os.writeLong(e.getKey());
+					os.writeUTF(entry.localPath);
+					writeBytes(os, entry.digest);
+					writeBytes(os, entry.metadata);
+					writeHashes(os, entry.nestedJars);
+				}
+
+				os.writeInt(usedRoots.size());
+
+				for (Map.Entry<Path, RootEntry> e : usedRoots.entrySet()) {
+					RootEntry entry = e.getValue();
+					os.writeUTF(e.getKey().toString());
+					os.writeLong(entry.key.size);
+					os.writeLong(entry.key.mtime);
+					os.writeLong(entry.key.tailHash);
+					os.writeBoolean(entry.metadata != null);
+					if (entry.metadata != null) writeBytes(os, entry.metadata);
+					writeHashes(os, entry.nestedJars);
+				}
+			}
+
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			tmpFile = null;
+			Log.debug(LogCategory.DISCOVERY, "Wrote discovery index with %d jars and %d nested jars to %s", usedRoots.size(), usedNestedJars.size(), file);
+		} catch (IOException e) {
+			Log.warn(LogCategory.DISCOVERY, "Error writing discovery index %s", file, e);
+		} finally {
+			if (tmpFile != null) {
+				try {
+					Files.deleteIfExists(tmpFile);
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream is) throws IOException {
+		byte[] ret = new byte[readCount(is, 1)];
+		is.readFully(ret);
+
+		return ret;
+	}
+
+	/**
+	 * Read an element count, rejecting counts the remaining data can't hold.
+	 */
+	private static int readCount(DataInputStream is, int elementSize) throws IOException {
+		int ret = is.readInt();
+		if (ret < 0 || (long) ret * elementSize > is.available()) throw new IOException("invalid count: "+ret);
+
+		return ret;
+	}
+
+	private static void writeBytes(DataOutputStream os, byte[] data) throws IOException {
+		os.writeInt(data.length);
+		os.write(data);
+	}
+
+	private static long[] readHashes(DataInputStream is) throws IOException {
+		long[] ret = new long[readCount(is, Long.BYTES)];
+
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = is.readLong();
+		}
+
+		return ret;
+	}
+
+	private static void writeHashes(DataOutputStream os, long[] hashes) throws IOException {
+		os.writeInt(hashes.length);
+
+		for (long hash : hashes) {
+			os.writeLong(hash);
+		}
+	}
+
+	static long[] toHashes(Collection<ModCandidateImpl> mods) {
+		long[] ret = new long[mods.size()];
+		int i = 0;
+
+		for (ModCandidateImpl mod : mods) {
+			ret[i++] = mod.getHash();
+		}
+
+		return ret;
+	}
+
+	static final class Key {
+		final long size;
+		final long mtime;
+		final long tailHash;
+
+		Key(long size, long mtime, long tailHash) {
+			this.size = size;
+			this.mtime = mtime;
+			this.tailHash = tailHash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) return false;
+
+			Key o = (Key) obj;
+
+			return size == o.size && mtime == o.mtime && tailHash == o.tailHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(size) * 31 + Long.hashCode(tailHash);
+		}
+	}
+
+	static final class RootEntry {
+		final Key key;
+		final byte[] metadata; // serialized metadata, null for non-Fabric jars
+		final long[] nestedJars;
+
+		RootEntry(Key key, byte[] metadata, long[] nestedJars) {
+			this.key = key;
+			this.metadata = metadata;
+			this.nestedJars = nestedJars;
+		}
+	}
+
+	static final class NestedEntry {
+		final String localPath;
+		final byte[] digest; // SHA-256 of the jar, see NestedJarStore
+		final byte[] metadata; // serialized metadata
+		final long[] nestedJars;
+
+		NestedEntry(String localPath, byte[] digest, byte[] metadata, long[] nestedJars) {
+			this.localPath = localPath;
+			this.digest = digest;
+			this.metadata = metadata;
+			this.nestedJars = nestedJars;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NestedEntry)) return false;
+
+			NestedEntry o = (NestedEntry) obj;
+
+			return localPath.equals(o.localPath) && Arrays.equals(digest, o.digest) && Arrays.equals(metadata, o.metadata) && Arrays.equals(nestedJars, o.nestedJars);
+		}
+
+		@Override
+		public int hashCode() {
+			return localPath.hashCode() * 31 + Arrays.hashCode(metadata);
+		}
+	}
+}
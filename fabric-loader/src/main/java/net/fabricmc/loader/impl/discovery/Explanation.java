@@ -16,10 +16,12 @@
 
 package net.fabricmc.loader.impl.discovery;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.fabricmc.loader.api.metadata.ModDependency;
 
 class Explanation implements Comparable<Explanation> {
-	private static int nextCmpId;
+	private static final AtomicInteger nextCmpId = new AtomicInteger();
 
 	final ErrorKind error;
 	final ModCandidateImpl mod;
@@ -48,7 +50,7 @@ class Explanation implements Comparable<Explanation> {
 		this.mod = mod;
 		this.dep = dep;
 		this.data = data;
-		this.cmpId = nextCmpId++;
+		this.cmpId = nextCmpId.getAndIncrement();
 	}
 
 	@Override
@@ -20,10 +20,14 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -40,6 +44,9 @@ import net.fabricmc.loader.impl.metadata.AbstractModMetadata;
 import net.fabricmc.loader.impl.metadata.DependencyOverrides;
 import net.fabricmc.loader.impl.metadata.LoaderModMetadata;
 import net.fabricmc.loader.impl.metadata.VersionOverrides;
+import net.fabricmc.loader.impl.util.HashUtil;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
 
 public final class ModCandidateImpl implements DomainObject.Mod {
 	static final Comparator<ModCandidateImpl> ID_VERSION_COMPARATOR = new Comparator<ModCandidateImpl>() {
@@ -61,6 +68,8 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 	private final Collection<ModCandidateImpl> parentMods;
 	private int minNestLevel;
 	private SoftReference<ByteBuffer> dataRef;
+	private Path dataFile; // temporary copy of a large nested jar
+	private byte[] digest; // SHA-256 of a nested jar's content, keys its extracted copy
 
 	static ModCandidateImpl createBuiltin(BuiltinMod mod, VersionOverrides versionOverrides, DependencyOverrides depOverrides) {
 		LoaderModMetadata metadata = new BuiltinMetadataWrapper(mod.metadata);
@@ -84,10 +93,14 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 		return entry.getCrc() << 32 | entry.getSize();
 	}
 
-	private static long getSize(long hash) {
+	static long getSize(long hash) {
 		return hash & 0xffffffffL;
 	}
 
+	static long getCrc(long hash) {
+		return hash >>> 32;
+	}
+
 	private ModCandidateImpl(List<Path> paths, String localPath, long hash, LoaderModMetadata metadata, boolean requiresRemap, Collection<ModCandidateImpl> nestedMods) {
 		this.originPaths = paths;
 		this.paths = paths;
@@ -131,6 +144,10 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 		}
 	}
 
+	long getHash() {
+		return hash;
+	}
+
 	public LoaderModMetadata getMetadata() {
 		return metadata;
 	}
@@ -212,8 +229,30 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 		this.dataRef = new SoftReference<>(data);
 	}
 
+	void setDataFile(Path file) {
+		this.dataFile = file;
+	}
+
+	byte[] getDigest() {
+		return digest;
+	}
+
+	void setDigest(byte[] digest) {
+		this.digest = digest;
+	}
+
 	void clearCachedData() {
 		this.dataRef = null;
+
+		if (dataFile != null) {
+			try {
+				Files.deleteIfExists(dataFile);
+			} catch (IOException e) {
+				// ignore, deleted on exit
+			}
+
+			dataFile = null;
+		}
 	}
 
 	public Path copyToDir(Path outputDir, boolean temp) throws IOException {
@@ -223,6 +262,8 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 		try {
 			if (temp) {
 				ret = Files.createTempFile(outputDir, getId(), ".jar");
+			} else if (paths == null && digest != null) { // nested jar with known content, use the shared store
+				return copyToStore(outputDir);
 			} else {
 				ret = outputDir.resolve(getDefaultFileName());
 
@@ -245,6 +286,47 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 		return ret;
 	}
 
+	private Path copyToStore(Path storeDir) throws IOException {
+		Path ret = NestedJarStore.find(storeDir, digest);
+
+		if (ret != null) {
+			if (Arrays.equals(HashUtil.hash(ret), digest)) return ret;
+
+			Log.warn(LogCategory.DISCOVERY, "Discarding corrupt extracted copy %s of %s", ret, this);
+			Files.delete(ret);
+		}
+
+		ret = NestedJarStore.getFile(storeDir, digest, getStoreFileName());
+		Files.createDirectories(ret.getParent());
+		Path tmpFile = Files.createTempFile(ret.getParent(), getId(), ".tmp");
+
+		try {
+			copyToFile(tmpFile);
+
+			try {
+				Files.move(tmpFile, ret, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, ret, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+
+		return ret;
+	}
+
+	private String getStoreFileName() {
+		String ret = String.format("%s-%s.jar",
+				getId(),
+				FILE_NAME_SANITIZING_PATTERN.matcher(getVersion().getFriendlyString()).replaceAll("_"));
+
+		if (ret.length() > 64) {
+			ret = ret.substring(0, 60).concat(".jar");
+		}
+
+		return ret;
+	}
+
 	String getDefaultFileName() {
 		String ret = String.format("%s-%s-%s.jar",
 				getId(),
@@ -277,29 +359,32 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 			ByteBuffer data = dataRef.get();
 
 			if (data != null) {
-				Files.copy(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.arrayOffset() + data.limit()), out, StandardCopyOption.REPLACE_EXISTING);
+				data = data.duplicate(); // don't disturb the position of the shared buffer
+
+				try (FileChannel channel = FileChannel.open(out, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					while (data.hasRemaining()) {
+						channel.write(data);
+					}
+				}
+
 				return;
 			}
 		}
 
-		if (paths != null) {
-			if (paths.size() != 1) throw new UnsupportedOperationException("multiple paths for "+this);
-
-			Files.copy(paths.get(0), out);
+		if (paths != null || dataFile != null) {
+			Files.copy(getFile(), out, StandardCopyOption.REPLACE_EXISTING);
 
 			return;
 		}
 
 		ModCandidateImpl parent = getBestSourcingParent();
 
-		if (parent.paths != null) {
-			if (parent.paths.size() != 1) throw new UnsupportedOperationException("multiple parent paths for "+this);
-
-			try (ZipFile zf = new ZipFile(parent.paths.get(0).toFile())) {
+		if (parent.paths != null || parent.dataFile != null) {
+			try (ZipFile zf = new ZipFile(parent.getFile().toFile())) {
 				ZipEntry entry = zf.getEntry(localPath);
 				if (entry == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
 
-				Files.copy(zf.getInputStream(entry), out);
+				Files.copy(zf.getInputStream(entry), out, StandardCopyOption.REPLACE_EXISTING);
 			}
 		} else {
 			ByteBuffer data = parent.getData();
@@ -309,7 +394,7 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 
 				while ((entry = zis.getNextEntry()) != null) {
 					if (entry.getName().equals(localPath)) {
-						Files.copy(zis, out);
+						Files.copy(zis, out, StandardCopyOption.REPLACE_EXISTING);
 						return;
 					}
 				}
@@ -329,17 +414,13 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 
 		ByteBuffer ret;
 
-		if (paths != null) {
-			if (paths.size() != 1) throw new UnsupportedOperationException("multiple paths for "+this);
-
-			ret = ByteBuffer.wrap(Files.readAllBytes(paths.get(0)));
+		if (paths != null || dataFile != null) {
+			ret = ByteBuffer.wrap(Files.readAllBytes(getFile()));
 		} else {
 			ModCandidateImpl parent = getBestSourcingParent();
 
-			if (parent.paths != null) {
-				if (parent.paths.size() != 1) throw new UnsupportedOperationException("multiple parent paths for "+this);
-
-				try (ZipFile zf = new ZipFile(parent.paths.get(0).toFile())) {
+			if (parent.paths != null || parent.dataFile != null) {
+				try (ZipFile zf = new ZipFile(parent.getFile().toFile())) {
 					ZipEntry entry = zf.getEntry(localPath);
 					if (entry == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
 
@@ -369,6 +450,16 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 		return ret;
 	}
 
+	/**
+	 * Get the jar file holding this mod, either its own path or the temporary copy of its nested jar.
+	 */
+	private Path getFile() {
+		if (paths == null) return dataFile;
+		if (paths.size() != 1) throw new UnsupportedOperationException("multiple paths for "+this);
+
+		return paths.get(0);
+	}
+
 	private ModCandidateImpl getBestSourcingParent() {
 		if (parentMods.isEmpty()) return null;
 
@@ -378,6 +469,7 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 			if (parent.minNestLevel >= minNestLevel) continue;
 
 			if (parent.paths != null && parent.paths.size() == 1
+					|| parent.dataFile != null
 					|| parent.dataRef != null && parent.dataRef.get() != null) {
 				return parent;
 			}
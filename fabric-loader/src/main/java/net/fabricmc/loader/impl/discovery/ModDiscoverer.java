@@ -18,15 +18,18 @@ package net.fabricmc.loader.impl.discovery;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
@@ -37,11 +40,17 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -58,16 +67,20 @@ import net.fabricmc.loader.impl.metadata.DependencyOverrides;
 import net.fabricmc.loader.impl.metadata.LoaderModMetadata;
 import net.fabricmc.loader.impl.metadata.MetadataVerifier;
 import net.fabricmc.loader.impl.metadata.ModMetadataParser;
+import net.fabricmc.loader.impl.metadata.ModMetadataSerializer;
 import net.fabricmc.loader.impl.metadata.NestedJarEntry;
 import net.fabricmc.loader.impl.metadata.ParseMetadataException;
 import net.fabricmc.loader.impl.metadata.VersionOverrides;
 import net.fabricmc.loader.impl.util.ExceptionUtil;
+import net.fabricmc.loader.impl.util.HashUtil;
 import net.fabricmc.loader.impl.util.LoaderUtil;
 import net.fabricmc.loader.impl.util.SystemProperties;
 import net.fabricmc.loader.impl.util.log.Log;
 import net.fabricmc.loader.impl.util.log.LogCategory;
 
 public final class ModDiscoverer {
+	private static final int SPILL_THRESHOLD = 1024 * 1024; // nested jars larger than this are kept on disk instead of the heap
+
 	private final VersionOverrides versionOverrides;
 	private final DependencyOverrides depOverrides;
 	private final List<ModCandidateFinder> candidateFinders = new ArrayList<>();
@@ -75,6 +88,15 @@ public final class ModDiscoverer {
 	private final Map<Long, ModScanTask> jijDedupMap = new ConcurrentHashMap<>(); // avoids reading the same jar twice
 	private final List<NestedModInitData> nestedModInitDatas = Collections.synchronizedList(new ArrayList<>()); // breaks potential cycles from deduplication
 	private final List<Path> nonFabricMods = Collections.synchronizedList(new ArrayList<>());
+	private final List<ScannedRoot> scannedRoots = Collections.synchronizedList(new ArrayList<>()); // root jars to add to the index
+	private final AtomicInteger scanCount = new AtomicInteger();
+	private final LongAdder scanTime = new LongAdder(); // time spent in scan tasks excluding nested tasks they ran inline
+	private final LongAccumulator maxScanTime = new LongAccumulator(Math::max, 0);
+	private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+	private Path spillDir;
+	private Path storeDir;
+	private Path indexFile;
+	private DiscoveryIndex index;
 
 	public ModDiscoverer(VersionOverrides versionOverrides, DependencyOverrides depOverrides) {
 		this.versionOverrides = versionOverrides;
@@ -85,9 +107,33 @@ public final class ModDiscoverer {
 		candidateFinders.add(f);
 	}
 
+	/**
+	 * Set the directory for temporarily storing large nested jars, null to keep all of them in memory.
+	 */
+	public void setSpillDir(Path spillDir) {
+		this.spillDir = spillDir;
+	}
+
+	/**
+	 * Set the directory of the content addressed store for extracted nested jars, null to disable.
+	 *
+	 * <p>Nested jars already in the store are scanned from there instead of being read out of their parent jar.
+	 */
+	public void setStoreDir(Path storeDir) {
+		this.storeDir = storeDir;
+	}
+
+	/**
+	 * Set the file for persisting the discovery results of unchanged mod jars across runs, null to disable.
+	 */
+	public void setIndexFile(Path indexFile) {
+		this.indexFile = indexFile;
+	}
+
 	public List<ModCandidateImpl> discoverMods(FabricLoaderImpl loader, Map<String, Set<ModCandidateImpl>> envDisabledModsOut) throws ModResolutionException {
 		long startTime = System.nanoTime();
-		ForkJoinPool pool = new ForkJoinPool();
+		if (indexFile != null) index = DiscoveryIndex.load(indexFile);
+		ForkJoinPool pool = createPool();
 		Set<Path> processedPaths = new HashSet<>(); // suppresses duplicate paths
 		List<Future<ModCandidateImpl>> futures = new ArrayList<>();
 
@@ -138,32 +184,27 @@ public final class ModDiscoverer {
 		int timeout = Integer.getInteger(SystemProperties.DEBUG_DISCOVERY_TIMEOUT, 60);
 		if (timeout <= 0) timeout = Integer.MAX_VALUE;
 
-		try {
-			pool.shutdown();
+		// wait for the tasks individually, a task registers its nested mods' init data before completing, so all of it is
+		// present once the preceding tasks are done
 
-			pool.awaitTermination(timeout, TimeUnit.SECONDS);
+		long deadline = timeout == Integer.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + TimeUnit.SECONDS.toNanos(timeout);
 
+		try {
 			for (Future<ModCandidateImpl> future : futures) {
-				if (!future.isDone()) {
-					throw new TimeoutException();
-				}
-
 				try {
-					ModCandidateImpl candidate = future.get();
+					ModCandidateImpl candidate = await(future, deadline);
 					if (candidate != null) candidates.add(candidate);
 				} catch (ExecutionException e) {
 					exception = ExceptionUtil.gatherExceptions(e, exception, exc -> new ModResolutionException("Mod discovery failed!", exc));
 				}
 			}
 
-			for (NestedModInitData data : nestedModInitDatas) {
-				for (Future<ModCandidateImpl> future : data.futures) {
-					if (!future.isDone()) {
-						throw new TimeoutException();
-					}
+			for (int i = 0; i < nestedModInitDatas.size(); i++) { // may grow while waiting
+				NestedModInitData data = nestedModInitDatas.get(i);
 
+				for (Future<ModCandidateImpl> future : data.futures) {
 					try {
-						ModCandidateImpl candidate = future.get();
+						ModCandidateImpl candidate = await(future, deadline);
 						if (candidate != null) data.target.add(candidate);
 					} catch (ExecutionException e) {
 						exception = ExceptionUtil.gatherExceptions(e, exception, exc -> new ModResolutionException("Mod discovery failed!", exc));
@@ -171,17 +212,32 @@ public final class ModDiscoverer {
 				}
 			}
 		} catch (TimeoutException e) {
+			pool.shutdownNow();
+
 			throw new FormattedException("Mod discovery took too long!",
 					"Analyzing the mod folder contents took longer than %d seconds. This may be caused by unusually slow hardware, pathological antivirus interference or other issues. The timeout can be changed with the system property %s (-D%<s=<desired timeout in seconds>).",
 					timeout, SystemProperties.DEBUG_DISCOVERY_TIMEOUT);
 		} catch (InterruptedException e) {
+			pool.shutdownNow();
+
 			throw new FormattedException("Mod discovery interrupted!", e);
 		}
 
+		pool.shutdown();
+
+		int scans = scanCount.get();
+
+		if (scans > 0) {
+			Log.debug(LogCategory.DISCOVERY, "Scanned %d jars/dirs (%d nested) on %d threads, %.2f ms avg, %.1f ms max per jar, max queue depth %d",
+					scans, jijDedupMap.size(), pool.getParallelism(), scanTime.sum() * 1e-6 / scans, maxScanTime.get() * 1e-6, maxQueueDepth.get());
+		}
+
 		if (exception != null) {
 			throw exception;
 		}
 
+		if (index != null) updateIndex(futures);
+
 		// get optional set of disabled mod ids
 		Set<String> disabledModIds = findDisabledModIds();
 
@@ -217,6 +273,84 @@ public final class ModDiscoverer {
 		return new ArrayList<>(ret);
 	}
 
+	private static ForkJoinPool createPool() {
+		int parallelism = Integer.getInteger(SystemProperties.DISCOVERY_THREADS, 0);
+
+		if (parallelism <= 0) {
+			// scanning is mostly zip I/O and inflating, more threads than that rarely help while still causing contention
+			parallelism = Math.max(2, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+		}
+
+		return new ForkJoinPool(parallelism, p -> {
+			ForkJoinWorkerThread ret = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			ret.setName("Mod Discovery " + ret.getPoolIndex());
+			ret.setDaemon(true);
+
+			return ret;
+		}, null, false);
+	}
+
+	private static ModCandidateImpl await(Future<ModCandidateImpl> future, long deadline) throws InterruptedException, ExecutionException, TimeoutException {
+		if (future.isDone()) return future.get();
+
+		long remaining = deadline - System.nanoTime();
+		if (remaining <= 0) throw new TimeoutException();
+
+		return future.get(remaining, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Add the freshly scanned root jars to the index and write it.
+	 */
+	private void updateIndex(List<Future<ModCandidateImpl>> futures) {
+		Map<ModCandidateImpl, byte[]> rawMetadata = new IdentityHashMap<>();
+
+		for (Future<ModCandidateImpl> future : futures) {
+			addRawMetadata((ModScanTask) future, rawMetadata);
+		}
+
+		for (ModScanTask task : jijDedupMap.values()) {
+			addRawMetadata(task, rawMetadata);
+		}
+
+		for (ScannedRoot root : scannedRoots) {
+			if (root.candidate == null) { // not a Fabric mod
+				index.put(root.path, new DiscoveryIndex.RootEntry(root.key, null, new long[0]));
+				continue;
+			}
+
+			byte[] metadata = rawMetadata.get(root.candidate);
+
+			if (metadata != null && addNestedJarsToIndex(root.candidate.getNestedMods(), rawMetadata)) {
+				index.put(root.path, new DiscoveryIndex.RootEntry(root.key, metadata, DiscoveryIndex.toHashes(root.candidate.getNestedMods())));
+			}
+		}
+
+		index.save();
+	}
+
+	private static void addRawMetadata(ModScanTask task, Map<ModCandidateImpl, byte[]> out) {
+		if (!task.isCompletedNormally()) return;
+
+		ModCandidateImpl candidate = task.getRawResult();
+		if (candidate != null && task.rawMetadata != null) out.put(candidate, task.rawMetadata);
+	}
+
+	private boolean addNestedJarsToIndex(Collection<ModCandidateImpl> mods, Map<ModCandidateImpl, byte[]> rawMetadata) {
+		for (ModCandidateImpl mod : mods) {
+			byte[] metadata = rawMetadata.get(mod);
+			if (metadata == null || mod.getDigest() == null) return false;
+
+			DiscoveryIndex.NestedEntry entry = new DiscoveryIndex.NestedEntry(mod.getLocalPath(), mod.getDigest(), metadata, DiscoveryIndex.toHashes(mod.getNestedMods()));
+			if (entry.equals(index.getNestedJar(mod.getHash()))) continue; // already added, avoids cycles
+
+			index.putNestedJar(mod.getHash(), entry);
+			if (!addNestedJarsToIndex(mod.getNestedMods(), rawMetadata)) return false;
+		}
+
+		return true;
+	}
+
 	public List<Path> getNonFabricMods() {
 		return Collections.unmodifiableList(nonFabricMods);
 	}
@@ -250,20 +384,22 @@ public final class ModDiscoverer {
 	final class ModScanTask extends RecursiveTask<ModCandidateImpl> {
 		private final List<Path> paths;
 		private final String localPath;
-		private final RewindableInputStream is;
+		private final NestedJar jar;
 		private final long hash;
 		private final boolean requiresRemap;
 		private final List<String> parentPaths;
+		byte[] rawMetadata; // metadata before applying overrides in the ModMetadataSerializer format, for the discovery index
+		private long inlineNestedTime;
 
 		ModScanTask(List<Path> paths, boolean requiresRemap) {
 			this(paths, null, null, -1, requiresRemap, Collections.emptyList());
 		}
 
-		private ModScanTask(List<Path> paths, String localPath, RewindableInputStream is, long hash,
+		private ModScanTask(List<Path> paths, String localPath, NestedJar jar, long hash,
 				boolean requiresRemap, List<String> parentPaths) {
 			this.paths = paths;
 			this.localPath = localPath != null ? localPath : paths.get(0).toString();
-			this.is = is;
+			this.jar = jar;
 			this.hash = hash;
 			this.requiresRemap = requiresRemap;
 			this.parentPaths = parentPaths;
@@ -271,13 +407,34 @@ public final class ModDiscoverer {
 
 		@Override
 		protected ModCandidateImpl compute() {
-			if (is != null) { // nested jar
+			ForkJoinPool pool = getPool();
+			if (pool != null) maxQueueDepth.accumulate(pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount());
+
+			long startTime = System.nanoTime();
+
+			try {
+				return scan();
+			} finally {
+				long time = System.nanoTime() - startTime - inlineNestedTime;
+				scanCount.incrementAndGet();
+				scanTime.add(time);
+				maxScanTime.accumulate(time);
+			}
+		}
+
+		private ModCandidateImpl scan() {
+			if (jar != null) { // nested jar
+				ModCandidateImpl ret = null;
+
 				try {
-					return computeJarStream();
+					ret = jar.file != null ? computeJarFile(jar.file) : computeJarStream();
+					return ret;
 				} catch (ParseMetadataException e) { // already contains all context
 					throw ExceptionUtil.wrap(e);
 				} catch (Throwable t) {
 					throw new RuntimeException(String.format("Error analyzing nested jar %s from %s: %s", localPath, parentPaths, t), t);
+				} finally {
+					if (ret == null) discardJar(jar); // not a mod or failed, the spilled file has no owner
 				}
 			} else { // regular classes-dir or jar
 				try {
@@ -317,12 +474,38 @@ public final class ModDiscoverer {
 			return ModCandidateImpl.createPlain(paths, metadata, requiresRemap, Collections.emptyList());
 		}
 
+		/**
+		 * Scan a jar file, using the discovery index for unchanged root jars.
+		 */
 		private ModCandidateImpl computeJarFile(Path path) throws IOException, ParseMetadataException {
+			if (jar != null || index == null) return scanJarFile(path);
+
+			DiscoveryIndex.Key key = DiscoveryIndex.computeKey(path);
+			DiscoveryIndex.RootEntry entry = index.get(path, key);
+
+			if (entry != null) {
+				try {
+					return restore(path, entry);
+				} catch (IOException | ParseMetadataException | RuntimeException e) { // the index must never prevent discovery
+					Log.debug(LogCategory.DISCOVERY, "Can't restore %s from the discovery index, rescanning: %s", path, e);
+				}
+			}
+
+			ModCandidateImpl ret = scanJarFile(path);
+			scannedRoots.add(new ScannedRoot(path, key, ret));
+
+			return ret;
+		}
+
+		/**
+		 * Scan a root jar or a nested jar that has been spilled to disk, only reading the entries of interest.
+		 */
+		private ModCandidateImpl scanJarFile(Path path) throws IOException, ParseMetadataException {
 			try (ZipFile zf = new ZipFile(path.toFile())) {
 				ZipEntry entry = zf.getEntry("fabric.mod.json");
 
 				if (entry == null) {
-					nonFabricMods.add(path);
+					if (jar == null) nonFabricMods.add(path);
 					return null;
 				}
 
@@ -333,7 +516,7 @@ public final class ModDiscoverer {
 				}
 
 				if (!metadata.loadsInEnvironment(envType)) {
-					return ModCandidateImpl.createPlain(paths, metadata, requiresRemap, Collections.emptyList());
+					return createCandidate(metadata, Collections.emptyList());
 				}
 
 				List<ModScanTask> nestedModTasks;
@@ -362,12 +545,15 @@ public final class ModDiscoverer {
 						}
 
 						@Override
-						public RewindableInputStream getInputStream() throws IOException {
+						public NestedJar getJar() throws IOException {
 							try (InputStream is = zf.getInputStream(currentEntry)) {
-								return new RewindableInputStream(is);
+								return readNestedJar(is, currentEntry.getSize());
 							}
 						}
 
+						@Override
+						public void skipJar() { } // only read on demand
+
 						private final Iterator<NestedJarEntry> jarIt = nestedJarPaths.iterator();
 						private ZipEntry currentEntry;
 					});
@@ -386,11 +572,127 @@ public final class ModDiscoverer {
 					nestedModInitDatas.add(new NestedModInitData(nestedModTasks, nestedMods));
 				}
 
-				return ModCandidateImpl.createPlain(paths, metadata, requiresRemap, nestedMods);
+				return createCandidate(metadata, nestedMods);
+			}
+		}
+
+		/**
+		 * Restore a root jar from the discovery index.
+		 *
+		 * <p>All metadata gets deserialized before registering any nested mods, so a failure leaves no trace and the jar
+		 * can be rescanned instead.
+		 */
+		private ModCandidateImpl restore(Path path, DiscoveryIndex.RootEntry entry) throws IOException, ParseMetadataException {
+			if (entry.metadata == null) {
+				nonFabricMods.add(path);
+				return null;
+			}
+
+			LoaderModMetadata metadata = restoreMetadata(entry.metadata, localPath, parentPaths);
+			Map<Long, LoaderModMetadata> nestedMetadata = new HashMap<>();
+			List<ModCandidateImpl> nestedMods = Collections.emptyList();
+
+			if (metadata.loadsInEnvironment(envType)) {
+				restoreNestedMetadata(entry.nestedJars, getNestedParentPaths(), nestedMetadata);
+				nestedMods = restoreNestedMods(entry.nestedJars, nestedMetadata);
 			}
+
+			rawMetadata = entry.metadata;
+
+			return createCandidate(metadata, nestedMods);
 		}
 
+		/**
+		 * Deserialize the metadata of all nested jars reachable through hashes that haven't been discovered yet.
+		 */
+		private void restoreNestedMetadata(long[] hashes, List<String> parentPaths, Map<Long, LoaderModMetadata> out) throws IOException, ParseMetadataException {
+			for (long hash : hashes) {
+				if (out.containsKey(hash) || jijDedupMap.containsKey(hash)) continue;
+
+				DiscoveryIndex.NestedEntry entry = index.getNestedJar(hash);
+				LoaderModMetadata metadata = restoreMetadata(entry.metadata, entry.localPath, parentPaths);
+				out.put(hash, metadata); // before recursing, breaks cycles
+
+				if (metadata.loadsInEnvironment(envType) && entry.nestedJars.length > 0) {
+					List<String> nestedParentPaths = new ArrayList<>(parentPaths.size() + 1);
+					nestedParentPaths.addAll(parentPaths);
+					nestedParentPaths.add(entry.localPath);
+
+					restoreNestedMetadata(entry.nestedJars, nestedParentPaths, out);
+				}
+			}
+		}
+
+		/**
+		 * Complete this nested jar's task from the discovery index instead of reading it.
+		 */
+		private void restoreNested(DiscoveryIndex.NestedEntry entry, Map<Long, LoaderModMetadata> nestedMetadata) {
+			try {
+				LoaderModMetadata metadata = nestedMetadata.get(hash);
+				List<ModCandidateImpl> nestedMods = Collections.emptyList();
+
+				if (metadata.loadsInEnvironment(envType)) {
+					nestedMods = restoreNestedMods(entry.nestedJars, nestedMetadata);
+				}
+
+				rawMetadata = entry.metadata;
+
+				ModCandidateImpl ret = ModCandidateImpl.createNested(localPath, hash, metadata, requiresRemap, nestedMods);
+				ret.setDigest(entry.digest);
+				complete(ret);
+			} catch (Throwable t) {
+				completeExceptionally(new RuntimeException(String.format("Error restoring nested jar %s from %s: %s", localPath, parentPaths, t), t));
+			}
+		}
+
+		/**
+		 * Register the restored nested mods, their metadata has to be supplied by {@link #restoreNestedMetadata}.
+		 */
+		private List<ModCandidateImpl> restoreNestedMods(long[] hashes, Map<Long, LoaderModMetadata> nestedMetadata) {
+			if (hashes.length == 0) return Collections.emptyList();
+
+			List<String> parentPaths = getNestedParentPaths();
+			List<ModScanTask> tasks = new ArrayList<>(hashes.length);
+
+			for (long hash : hashes) {
+				ModScanTask task = jijDedupMap.get(hash);
+
+				if (task == null) { // registered by now if restoreNestedMetadata didn't visit it
+					DiscoveryIndex.NestedEntry entry = index.getNestedJar(hash);
+					task = new ModScanTask(null, entry.localPath, null, hash, requiresRemap, parentPaths);
+					ModScanTask prev = jijDedupMap.putIfAbsent(hash, task);
+
+					if (prev != null) {
+						task = prev;
+					} else {
+						task.restoreNested(entry, nestedMetadata);
+					}
+				}
+
+				tasks.add(task);
+			}
+
+			List<ModCandidateImpl> ret = new ArrayList<>();
+			nestedModInitDatas.add(new NestedModInitData(tasks, ret));
+
+			return ret;
+		}
+
+		private ModCandidateImpl createCandidate(LoaderModMetadata metadata, Collection<ModCandidateImpl> nestedMods) {
+			if (jar == null) return ModCandidateImpl.createPlain(paths, metadata, requiresRemap, nestedMods);
+
+			ModCandidateImpl ret = ModCandidateImpl.createNested(localPath, hash, metadata, requiresRemap, nestedMods);
+			if (jar.tempFile) ret.setDataFile(jar.file);
+			ret.setDigest(jar.digest);
+
+			return ret;
+		}
+
+		/**
+		 * Scan a nested jar held in memory.
+		 */
 		private ModCandidateImpl computeJarStream() throws IOException, ParseMetadataException {
+			RewindableInputStream is = new RewindableInputStream(jar.data);
 			LoaderModMetadata metadata = null;
 			ZipEntry entry;
 
@@ -406,7 +708,10 @@ public final class ModDiscoverer {
 			if (metadata == null) return null;
 
 			if (!metadata.loadsInEnvironment(envType)) {
-				return ModCandidateImpl.createNested(localPath, hash, metadata, requiresRemap, Collections.emptyList());
+				ModCandidateImpl ret = ModCandidateImpl.createNested(localPath, hash, metadata, requiresRemap, Collections.emptyList());
+				ret.setDigest(jar.digest);
+
+				return ret;
 			}
 
 			Collection<NestedJarEntry> nestedJars = metadata.getJars();
@@ -433,7 +738,7 @@ public final class ModDiscoverer {
 
 							while ((ret = zis.getNextEntry()) != null) {
 								if (isValidNestedJarEntry(ret) && nestedJarPaths.remove(ret.getName())) {
-									is = new RewindableInputStream(zis); // reads the entry, which completes the ZipEntry with any trailing header data
+									jar = readNestedJar(zis, ret.getSize()); // reads the entry, which completes the ZipEntry with any trailing header data
 									return ret;
 								}
 							}
@@ -442,11 +747,16 @@ public final class ModDiscoverer {
 						}
 
 						@Override
-						public RewindableInputStream getInputStream() throws IOException {
-							return is;
+						public NestedJar getJar() throws IOException {
+							return jar;
+						}
+
+						@Override
+						public void skipJar() {
+							discardJar(jar);
 						}
 
-						private RewindableInputStream is;
+						private NestedJar jar;
 					});
 				}
 
@@ -465,16 +775,22 @@ public final class ModDiscoverer {
 			}
 
 			ModCandidateImpl ret = ModCandidateImpl.createNested(localPath, hash, metadata, requiresRemap, nestedMods);
-			ret.setData(is.getBuffer());
+			ret.setData(jar.data);
+			ret.setDigest(jar.digest);
 
 			return ret;
 		}
 
-		private List<ModScanTask> computeNestedMods(ZipEntrySource entrySource) throws IOException {
-			List<String> parentPaths = new ArrayList<>(this.parentPaths.size() + 1);
-			parentPaths.addAll(this.parentPaths);
-			parentPaths.add(localPath);
+		private List<String> getNestedParentPaths() {
+			List<String> ret = new ArrayList<>(parentPaths.size() + 1);
+			ret.addAll(parentPaths);
+			ret.add(localPath);
+
+			return ret;
+		}
 
+		private List<ModScanTask> computeNestedMods(ZipEntrySource entrySource) throws IOException {
+			List<String> parentPaths = getNestedParentPaths();
 			List<ModScanTask> tasks = new ArrayList<>(5);
 			ModScanTask localTask = null;
 			ZipEntry entry;
@@ -483,11 +799,16 @@ public final class ModDiscoverer {
 				long hash = ModCandidateImpl.hash(entry);
 				ModScanTask task = jijDedupMap.get(hash);
 
-				if (task == null) {
-					task = new ModScanTask(null, entry.getName(), entrySource.getInputStream(), hash, requiresRemap, parentPaths);
+				if (task != null) {
+					entrySource.skipJar();
+				} else {
+					NestedJar jar = findStoredJar(hash);
+					if (jar == null) jar = entrySource.getJar();
+					task = new ModScanTask(null, entry.getName(), jar, hash, requiresRemap, parentPaths);
 					ModScanTask prev = jijDedupMap.putIfAbsent(hash, task);
 
 					if (prev != null) {
+						discardJar(jar);
 						task = prev;
 					} else if (localTask == null) { // don't fork first task, leave it for this thread
 						localTask = task;
@@ -501,13 +822,30 @@ public final class ModDiscoverer {
 
 			if (tasks.isEmpty()) return Collections.emptyList();
 
-			if (localTask != null) localTask.invoke();
+			if (localTask != null) {
+				long startTime = System.nanoTime();
+				localTask.invoke();
+				inlineNestedTime += System.nanoTime() - startTime;
+			}
 
 			return tasks;
 		}
 
 		private LoaderModMetadata parseMetadata(InputStream is, String localPath) throws ParseMetadataException {
-			return ModMetadataParser.parseMetadata(is, localPath, parentPaths, versionOverrides, depOverrides, FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment());
+			boolean isDevelopment = FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment();
+
+			if (index == null) {
+				return ModMetadataParser.parseMetadata(is, localPath, parentPaths, versionOverrides, depOverrides, isDevelopment);
+			}
+
+			LoaderModMetadata metadata = ModMetadataParser.readMetadata(is, localPath, parentPaths, isDevelopment);
+			rawMetadata = ModMetadataSerializer.serialize(metadata); // null for unsupported metadata, which keeps the jar out of the index
+
+			return ModMetadataParser.applyOverrides(metadata, localPath, parentPaths, versionOverrides, depOverrides, isDevelopment);
+		}
+
+		private LoaderModMetadata restoreMetadata(byte[] data, String localPath, List<String> parentPaths) throws IOException, ParseMetadataException {
+			return ModMetadataParser.applyOverrides(ModMetadataSerializer.deserialize(data), localPath, parentPaths, versionOverrides, depOverrides, FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment());
 		}
 	}
 
@@ -517,23 +855,137 @@ public final class ModDiscoverer {
 
 	private interface ZipEntrySource {
 		ZipEntry getNextEntry() throws IOException;
-		RewindableInputStream getInputStream() throws IOException;
+		NestedJar getJar() throws IOException;
+		void skipJar() throws IOException; // the current entry's jar won't be used
+	}
+
+	/**
+	 * Delete a nested jar's temporary file right away if it won't be used, instead of leaving it until exit.
+	 */
+	private static void discardJar(NestedJar jar) {
+		if (jar == null || !jar.tempFile) return;
+
+		try {
+			Files.deleteIfExists(jar.file);
+		} catch (IOException e) {
+			Log.debug(LogCategory.DISCOVERY, "Can't delete temporary nested jar %s", jar.file, e);
+		}
+	}
+
+	/**
+	 * Look up a nested jar in the store by the digest the index recorded for its zip entry hash.
+	 *
+	 * <p>The stored jar is only used if its content matches both the recorded digest and the zip entry's CRC and size,
+	 * the latter alone could collide.
+	 */
+	private NestedJar findStoredJar(long hash) throws IOException {
+		if (index == null || storeDir == null) return null;
+
+		DiscoveryIndex.NestedEntry entry = index.getNestedJar(hash);
+		if (entry == null) return null;
+
+		Path file = NestedJarStore.find(storeDir, entry.digest);
+		if (file == null || Files.size(file) != ModCandidateImpl.getSize(hash)) return null;
+
+		MessageDigest digest = HashUtil.createDigest();
+		CRC32 crc = new CRC32();
+
+		try (InputStream is = new CheckedInputStream(Files.newInputStream(file), crc)) {
+			HashUtil.update(digest, is);
+		}
+
+		if (!Arrays.equals(digest.digest(), entry.digest) || crc.getValue() != ModCandidateImpl.getCrc(hash)) {
+			Log.debug(LogCategory.DISCOVERY, "Ignoring stored nested jar %s not matching the zip entry it was recorded for", file);
+			return null;
+		}
+
+		return new NestedJar(null, file, false, entry.digest);
+	}
+
+	/**
+	 * Read a nested jar's content, large jars get written to a temporary file to avoid keeping them on the heap.
+	 *
+	 * @param size the uncompressed size if known, -1 otherwise
+	 */
+	private NestedJar readNestedJar(InputStream is, long size) throws IOException { // no is.close()
+		Path spillDir = this.spillDir;
+
+		if (spillDir == null || size >= 0 && size <= SPILL_THRESHOLD) {
+			ByteBuffer data = readMod(is);
+
+			return new NestedJar(data, null, false, HashUtil.hash(data.array(), 0, data.limit()));
+		}
+
+		byte[] buffer = new byte[8192];
+		int offset = 0;
+
+		if (size < 0) { // unknown size, buffer up to the threshold before deciding, growing like readMod
+			buffer = new byte[30_000];
+			int len;
+
+			while ((len = is.read(buffer, offset, buffer.length - offset)) >= 0) {
+				offset += len;
+
+				if (offset == buffer.length) {
+					if (offset > SPILL_THRESHOLD) break;
+
+					buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, SPILL_THRESHOLD + 1));
+				}
+			}
+
+			if (offset <= SPILL_THRESHOLD) {
+				return new NestedJar(ByteBuffer.wrap(buffer, 0, offset), null, false, HashUtil.hash(buffer, 0, offset));
+			}
+		}
+
+		Files.createDirectories(spillDir);
+		Path file = Files.createTempFile(spillDir, "nested", ".jar");
+		file.toFile().deleteOnExit(); // fallback, normally deleted once the mod has been extracted or discarded
+
+		MessageDigest digest = HashUtil.createDigest();
+
+		try (OutputStream os = Files.newOutputStream(file)) {
+			os.write(buffer, 0, offset);
+			digest.update(buffer, 0, offset);
+
+			int len;
+
+			while ((len = is.read(buffer)) >= 0) {
+				os.write(buffer, 0, len);
+				digest.update(buffer, 0, len);
+			}
+		} catch (Throwable t) {
+			Files.deleteIfExists(file);
+			throw t;
+		}
+
+		return new NestedJar(null, file, true, digest.digest());
+	}
+
+	private static final class NestedJar {
+		final ByteBuffer data;
+		final Path file;
+		final boolean tempFile; // file is owned by the candidate, as opposed to being in the store
+		final byte[] digest;
+
+		NestedJar(ByteBuffer data, Path file, boolean tempFile, byte[] digest) {
+			this.data = data;
+			this.file = file;
+			this.tempFile = tempFile;
+			this.digest = digest;
+		}
 	}
 
 	private static final class RewindableInputStream extends InputStream {
 		private final ByteBuffer buffer;
 		private int pos;
 
-		RewindableInputStream(InputStream parent) throws IOException { // no parent.close()
-			buffer = readMod(parent);
+		RewindableInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
 
 			assert buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0;
 		}
 
-		public ByteBuffer getBuffer() {
-			return buffer;
-		}
-
 		public void rewind() {
 			pos = 0;
 		}
@@ -590,6 +1042,18 @@ public final class ModDiscoverer {
 		return ByteBuffer.wrap(buffer, 0, offset);
 	}
 
+	private static final class ScannedRoot {
+		final Path path;
+		final DiscoveryIndex.Key key;
+		final ModCandidateImpl candidate; // null if not a Fabric mod
+
+		ScannedRoot(Path path, DiscoveryIndex.Key key, ModCandidateImpl candidate) {
+			this.path = path;
+			this.key = key;
+			this.candidate = candidate;
+		}
+	}
+
 	private static class NestedModInitData {
 		final List<? extends Future<ModCandidateImpl>> futures;
 		final List<ModCandidateImpl> target;
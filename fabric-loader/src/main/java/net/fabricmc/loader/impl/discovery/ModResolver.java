@@ -16,6 +16,7 @@
 
 package net.fabricmc.loader.impl.discovery;
 
+import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -40,9 +41,14 @@ import net.fabricmc.loader.impl.util.log.Log;
 import net.fabricmc.loader.impl.util.log.LogCategory;
 
 public class ModResolver {
-	public static List<ModCandidateImpl> resolve(Collection<ModCandidateImpl> candidates, EnvType envType, Map<String, Set<ModCandidateImpl>> envDisabledMods) throws ModResolutionException {
+	/**
+	 * Select the mods to load from the supplied candidates.
+	 *
+	 * @param cacheFile file for storing the solver result to be reused with the same mod set, may be null to disable
+	 */
+	public static List<ModCandidateImpl> resolve(Collection<ModCandidateImpl> candidates, EnvType envType, Map<String, Set<ModCandidateImpl>> envDisabledMods, Path cacheFile) throws ModResolutionException {
 		long startTime = System.nanoTime();
-		List<ModCandidateImpl> result = findCompatibleSet(candidates, envType, envDisabledMods);
+		List<ModCandidateImpl> result = findCompatibleSet(candidates, envType, envDisabledMods, cacheFile);
 
 		long endTime = System.nanoTime();
 		Log.debug(LogCategory.RESOLUTION, "Mod resolution time: %.1f ms", (endTime - startTime) * 1e-6);
@@ -50,7 +56,7 @@ public class ModResolver {
 		return result;
 	}
 
-	private static List<ModCandidateImpl> findCompatibleSet(Collection<ModCandidateImpl> candidates, EnvType envType, Map<String, Set<ModCandidateImpl>> envDisabledMods) throws ModResolutionException {
+	private static List<ModCandidateImpl> findCompatibleSet(Collection<ModCandidateImpl> candidates, EnvType envType, Map<String, Set<ModCandidateImpl>> envDisabledMods, Path cacheFile) throws ModResolutionException {
 		// sort all mods by priority and group by id
 
 		List<ModCandidateImpl> allModsSorted = new ArrayList<>(candidates);
@@ -112,42 +118,33 @@ public class ModResolver {
 			preselectMod(mod, allModsSorted, modsById, selectedMods, uniqueSelectedMods);
 		}
 
-		// solve
+		// solve, trying the trivial case and the previous solution for the same mod set first
 
-		ModSolver.Result result;
-
-		try {
-			result = ModSolver.solve(allModsSorted, modsById,
-					selectedMods, uniqueSelectedMods);
-		} catch (ContradictionException | TimeoutException e) {
-			throw new ModResolutionException("Solving failed", e);
-		}
+		long solveStartTime = System.nanoTime();
+		String solveMethod;
 
-		if (!result.success) {
-			Log.warn(LogCategory.RESOLUTION, "Mod resolution failed");
-			Log.info(LogCategory.RESOLUTION, "Immediate reason: %s%n", result.immediateReason);
-			Log.info(LogCategory.RESOLUTION, "Reason: %s%n", result.reason);
-			if (!envDisabledMods.isEmpty()) Log.info(LogCategory.RESOLUTION, "%s environment disabled: %s%n", envType.name(), envDisabledMods.keySet());
+		if (selectTrivialSolution(allModsSorted, modsById, selectedMods, uniqueSelectedMods)) {
+			solveMethod = "trivial selection";
+		} else {
+			byte[] cacheKey = cacheFile != null ? ResolutionCache.computeKey(allModsSorted, uniqueSelectedMods) : null;
 
-			if (result.fix == null) {
-				Log.info(LogCategory.RESOLUTION, "No fix?");
+			if (cacheKey != null && ResolutionCache.restore(cacheFile, cacheKey, allModsSorted, modsById, selectedMods, uniqueSelectedMods)) {
+				solveMethod = "cached solution";
 			} else {
-				Log.info(LogCategory.RESOLUTION, "Fix: add %s, remove %s, replace [%s]%n",
-						result.fix.modsToAdd,
-						result.fix.modsToRemove,
-						result.fix.modReplacements.entrySet().stream().map(e -> String.format("%s -> %s", e.getValue(), e.getKey())).collect(Collectors.joining(", ")));
+				int preselectedCount = uniqueSelectedMods.size();
 
-				for (Collection<ModCandidateImpl> mods : envDisabledMods.values()) {
-					for (ModCandidateImpl m : mods) {
-						result.fix.inactiveMods.put(m, InactiveReason.WRONG_ENVIRONMENT);
-					}
+				solve(allModsSorted, modsById, selectedMods, uniqueSelectedMods, envType, envDisabledMods);
+
+				if (cacheKey != null) {
+					ResolutionCache.save(cacheFile, cacheKey, allModsSorted, uniqueSelectedMods.subList(preselectedCount, uniqueSelectedMods.size()));
 				}
-			}
 
-			throw new ModResolutionException("Some of your mods are incompatible with the game or each other!%s",
-					ResultAnalyzer.gatherErrors(result, selectedMods, modsById, envDisabledMods, envType));
+				solveMethod = "solver";
+			}
 		}
 
+		Log.debug(LogCategory.RESOLUTION, "Mod selection using %s: %.1f ms", solveMethod, (System.nanoTime() - solveStartTime) * 1e-6);
+
 		uniqueSelectedMods.sort(Comparator.comparing(ModCandidateImpl::getId));
 
 		// clear cached data and inbound refs for unused mods, set minNestLevel for used non-root mods to max, queue root mods
@@ -196,6 +193,80 @@ public class ModResolver {
 		return uniqueSelectedMods;
 	}
 
+	/**
+	 * Select all remaining mods if that is trivially the best solution, avoiding the solver setup.
+	 *
+	 * <p>This is the case if there is only one candidate per mod id and all of them can load together with their
+	 * dependencies satisfied, no breaks matching and nested mods' parents loading. The solver would select every
+	 * candidate then as well since all load conditions are greedy.
+	 *
+	 * @return whether the mods have been selected
+	 */
+	static boolean selectTrivialSolution(List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
+			Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods) throws ModResolutionException {
+		Map<String, ModCandidateImpl> mods = new HashMap<>(selectedMods);
+
+		for (Map.Entry<String, List<ModCandidateImpl>> entry : modsById.entrySet()) {
+			if (entry.getValue().size() > 1) return false; // requires choosing between candidates
+
+			mods.put(entry.getKey(), entry.getValue().get(0));
+		}
+
+		for (ModCandidateImpl mod : allModsSorted) {
+			if (mod.getLoadCondition().ordinal() > ModLoadCondition.IF_POSSIBLE.ordinal()) return false; // non-greedy
+			if (!ModSolver.hasAllDepsSatisfied(mod, mods)) return false;
+			if (!mod.isRoot() && !ModSolver.isAnyParentSelected(mod, mods)) return false;
+		}
+
+		for (ModCandidateImpl mod : uniqueSelectedMods) {
+			if (!ModSolver.hasAllDepsSatisfied(mod, mods)) return false;
+		}
+
+		for (ModCandidateImpl mod : allModsSorted) {
+			selectMod(mod, selectedMods, uniqueSelectedMods);
+		}
+
+		return true;
+	}
+
+	private static void solve(List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
+			Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods,
+			EnvType envType, Map<String, Set<ModCandidateImpl>> envDisabledMods) throws ModResolutionException {
+		ModSolver.Result result;
+
+		try {
+			result = ModSolver.solve(allModsSorted, modsById,
+					selectedMods, uniqueSelectedMods);
+		} catch (ContradictionException | TimeoutException e) {
+			throw new ModResolutionException("Solving failed", e);
+		}
+
+		if (!result.success) {
+			Log.warn(LogCategory.RESOLUTION, "Mod resolution failed");
+			Log.info(LogCategory.RESOLUTION, "Immediate reason: %s%n", result.immediateReason);
+			Log.info(LogCategory.RESOLUTION, "Reason: %s%n", result.reason);
+			if (!envDisabledMods.isEmpty()) Log.info(LogCategory.RESOLUTION, "%s environment disabled: %s%n", envType.name(), envDisabledMods.keySet());
+
+			if (result.fix == null) {
+				Log.info(LogCategory.RESOLUTION, "No fix?");
+			} else {
+				Log.info(LogCategory.RESOLUTION, "Fix: add %s, remove %s, replace [%s]%n",
+						result.fix.modsToAdd,
+						result.fix.modsToRemove,
+						result.fix.modReplacements.entrySet().stream().map(e -> String.format("%s -> %s", e.getValue(), e.getKey())).collect(Collectors.joining(", ")));
+
+				for (Collection<ModCandidateImpl> mods : envDisabledMods.values()) {
+					for (ModCandidateImpl m : mods) {
+						result.fix.inactiveMods.put(m, InactiveReason.WRONG_ENVIRONMENT);
+					}
+				}
+			}
+
+			throw new ModResolutionException("Some of your mods are incompatible with the game or each other!%s",
+					ResultAnalyzer.gatherErrors(result, selectedMods, modsById, envDisabledMods, envType));
+		}
+	}
+
 	static void preselectMod(ModCandidateImpl mod, List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
 			Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods) throws ModResolutionException {
 		selectMod(mod, selectedMods, uniqueSelectedMods);
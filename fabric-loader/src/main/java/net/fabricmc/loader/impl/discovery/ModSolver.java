@@ -29,6 +29,8 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.function.Function;
 
 import org.sat4j.pb.IPBSolver;
@@ -66,10 +68,7 @@ final class ModSolver {
 
 		solverPrepTime = System.nanoTime();
 
-		IPBSolver solver = SolverFactory.newDefaultOptimizer();
-
-		int timeout = Integer.getInteger(SystemProperties.DEBUG_RESOLUTION_TIMEOUT, 60);
-		if (timeout > 0) solver.setTimeout(timeout); // in seconds
+		IPBSolver solver = createSolver();
 
 		DependencyHelper<DomainObject, Explanation> dependencyHelper = createDepHelper(solver);
 
@@ -105,27 +104,58 @@ final class ModSolver {
 
 			return Result.createSuccess();
 		} else { // no solution
-			Set<Explanation> reason = dependencyHelper.why();
-
-			// gather all failed deps
+			// gather all failed deps and find the best solution with mod addition/removal on a separate solver while
+			// the current solver computes the reason
 
 			Set<ModDependency> failedDeps = Collections.newSetFromMap(new IdentityHashMap<>());
 			List<Explanation> failedExplanations = new ArrayList<>();
 
-			computeFailureCausesOptional(allModsSorted, modsById,
-					priorities, selectedMods, uniqueSelectedMods,
-					reason, dependencyHelper,
-					failedDeps, failedExplanations);
+			FutureTask<Fix> fixTask = new FutureTask<>(() -> {
+				DependencyHelper<DomainObject, Explanation> fixDependencyHelper = createDepHelper(createSolver());
 
-			// find best solution with mod addition/removal
+				computeFailureCausesOptional(allModsSorted, modsById,
+						priorities, selectedMods, uniqueSelectedMods,
+						fixDependencyHelper,
+						failedDeps, failedExplanations);
 
-			fixSetupTime = System.nanoTime();
+				fixSetupTime = System.nanoTime();
 
-			Fix fix = computeFix(uniqueSelectedMods, allModsSorted, modsById,
-					priorities, selectedMods,
-					failedDeps, dependencyHelper);
+				Fix fix = computeFix(uniqueSelectedMods, allModsSorted, modsById,
+						priorities, selectedMods,
+						failedDeps, fixDependencyHelper);
 
-			dependencyHelper.reset();
+				fixDependencyHelper.reset();
+
+				return fix;
+			});
+
+			Thread fixThread = new Thread(fixTask, "Mod Resolution Fix");
+			fixThread.setDaemon(true);
+			fixThread.start();
+
+			Set<Explanation> reason;
+			Fix fix;
+
+			try {
+				reason = dependencyHelper.why();
+				dependencyHelper.reset();
+
+				fix = fixTask.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ModResolutionException("Interrupted while analyzing the mod resolution failure", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof ContradictionException) throw (ContradictionException) cause;
+				if (cause instanceof TimeoutException) throw (TimeoutException) cause;
+				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+				if (cause instanceof Error) throw (Error) cause;
+
+				throw new ModResolutionException("Analyzing the mod resolution failure failed", cause);
+			} finally {
+				fixTask.cancel(true); // no-op if done
+			}
 
 			return Result.createFailure(reason, failedExplanations, fix);
 		}
@@ -161,7 +191,7 @@ final class ModSolver {
 
 	private static void computeFailureCausesOptional(List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
 			Map<ModCandidateImpl, Integer> priorities, Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods,
-			Set<Explanation> reason, DependencyHelper<DomainObject, Explanation> dependencyHelper,
+			DependencyHelper<DomainObject, Explanation> dependencyHelper,
 			Set<ModDependency> failedDeps, List<Explanation> failedExplanations) throws ContradictionException, TimeoutException {
 		dependencyHelper.reset();
 		dependencyHelper = createDepHelper(dependencyHelper.getSolver()); // dependencyHelper.reset doesn't fully reset the dep helper
@@ -929,6 +959,15 @@ final class ModSolver {
 
 	private static final BigInteger TWO = BigInteger.valueOf(2);
 
+	private static IPBSolver createSolver() {
+		IPBSolver ret = SolverFactory.newDefaultOptimizer();
+
+		int timeout = Integer.getInteger(SystemProperties.DEBUG_RESOLUTION_TIMEOUT, 60);
+		if (timeout > 0) ret.setTimeout(timeout); // in seconds
+
+		return ret;
+	}
+
 	private static DependencyHelper<DomainObject, Explanation> createDepHelper(IPBSolver solver) {
 		DependencyHelper<DomainObject, Explanation> ret = new DependencyHelper<>(solver); // new LexicoHelper<>(solver)
 		ret.setNegator(negator);
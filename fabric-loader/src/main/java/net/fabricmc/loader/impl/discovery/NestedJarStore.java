@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import net.fabricmc.loader.impl.util.HashUtil;
+
+/**
+ * Content addressed storage for extracted nested jars.
+ *
+ * <p>A jar is stored as {@code <store dir>/<SHA-256 of its content>/<file name>}, so identical jars bundled by
+ * different mods are extracted once and remain reusable across launches. The file name is only informational.
+ */
+final class NestedJarStore {
+	private NestedJarStore() { }
+
+	/**
+	 * Find the stored jar for a digest.
+	 *
+	 * @return the jar or null if it hasn't been stored yet
+	 */
+	static Path find(Path storeDir, byte[] digest) throws IOException {
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(getDir(storeDir, digest), "*.jar")) {
+			for (Path file : ds) {
+				return file;
+			}
+		} catch (NoSuchFileException e) {
+			// not stored
+		}
+
+		return null;
+	}
+
+	static Path getFile(Path storeDir, byte[] digest, String fileName) {
+		return getDir(storeDir, digest).resolve(fileName);
+	}
+
+	private static Path getDir(Path storeDir, byte[] digest) {
+		return storeDir.resolve(HashUtil.toHex(digest));
+	}
+}
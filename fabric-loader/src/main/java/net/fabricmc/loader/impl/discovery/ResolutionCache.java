@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.discovery;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.api.metadata.version.VersionPredicate;
+import net.fabricmc.loader.impl.util.HashUtil;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Persistent cache of the last successful solver selection, avoiding the SAT4J solve for an unchanged mod set.
+ *
+ * <p>The selection is keyed by a digest of everything the solver constraints are generated from: the candidates in
+ * priority order with their ids, versions, provides, load conditions, parents and dependencies, plus the preselected
+ * mods. Dependency overrides and the dependency softening in {@link ModResolver} are already applied to the
+ * dependencies at this point. A cached selection is checked against the hard constraints before it gets used.
+ */
+final class ResolutionCache {
+	private static final int FORMAT_VERSION = 1;
+
+	static byte[] computeKey(List<ModCandidateImpl> allModsSorted, List<ModCandidateImpl> uniqueSelectedMods) {
+		MessageDigest digest = HashUtil.createDigest();
+		HashUtil.update(digest, FORMAT_VERSION);
+		HashUtil.update(digest, uniqueSelectedMods.size());
+
+		for (ModCandidateImpl mod : uniqueSelectedMods) {
+			update(digest, mod);
+		}
+
+		HashUtil.update(digest, allModsSorted.size());
+
+		for (ModCandidateImpl mod : allModsSorted) {
+			update(digest, mod);
+		}
+
+		return digest.digest();
+	}
+
+	private static void update(MessageDigest digest, ModCandidateImpl mod) {
+		HashUtil.update(digest, mod.getId());
+		HashUtil.update(digest, mod.getVersion().getFriendlyString());
+		HashUtil.update(digest, mod.isBuiltin() ? 1 : 0);
+		HashUtil.update(digest, mod.isRoot() ? 1 : 0);
+		HashUtil.update(digest, mod.getLoadCondition().ordinal());
+		HashUtil.update(digest, mod.getProvides().size());
+
+		for (String provided : mod.getProvides()) {
+			HashUtil.update(digest, provided);
+		}
+
+		HashUtil.update(digest, mod.getParentMods().size());
+
+		for (ModCandidateImpl parent : mod.getParentMods()) {
+			HashUtil.update(digest, parent.getId());
+			HashUtil.update(digest, parent.getVersion().getFriendlyString());
+		}
+
+		HashUtil.update(digest, mod.getDependencies().size());
+
+		for (ModDependency dep : mod.getDependencies()) {
+			HashUtil.update(digest, dep.getKind().ordinal());
+			HashUtil.update(digest, dep.getModId());
+			HashUtil.update(digest, dep.getVersionRequirements().size());
+
+			for (VersionPredicate predicate : dep.getVersionRequirements()) {
+				HashUtil.update(digest, predicate.toString());
+			}
+		}
+	}
+
+	/**
+	 * Select the cached solution for the supplied key if there is one and it satisfies all hard constraints.
+	 *
+	 * @return whether the cached solution was applied to selectedMods and uniqueSelectedMods
+	 */
+	static boolean restore(Path file, byte[] key, List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
+			Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods) {
+		int[] selection = load(file, key);
+		if (selection == null) return false;
+
+		Map<String, ModCandidateImpl> newSelectedMods = new HashMap<>(selectedMods);
+		List<ModCandidateImpl> newUniqueSelectedMods = new ArrayList<>(uniqueSelectedMods);
+
+		try {
+			for (int index : selection) {
+				if (index < 0 || index >= allModsSorted.size()) return false;
+
+				ModResolver.selectMod(allModsSorted.get(index), newSelectedMods, newUniqueSelectedMods);
+			}
+		} catch (ModResolutionException e) { // duplicate id
+			return false;
+		}
+
+		if (!isValid(modsById, newSelectedMods, newUniqueSelectedMods)) {
+			Log.debug(LogCategory.RESOLUTION, "Discarding invalid cached mod resolution from %s", file);
+			return false;
+		}
+
+		selectedMods.putAll(newSelectedMods);
+		uniqueSelectedMods.clear();
+		uniqueSelectedMods.addAll(newUniqueSelectedMods);
+
+		return true;
+	}
+
+	private static boolean isValid(Map<String, List<ModCandidateImpl>> modsById, Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods) {
+		for (ModCandidateImpl mod : uniqueSelectedMods) {
+			if (!ModSolver.hasAllDepsSatisfied(mod, selectedMods)) return false;
+			if (!mod.isRoot() && !ModSolver.isAnyParentSelected(mod, selectedMods)) return false;
+		}
+
+		// mods that have to be loaded: root mods and nested mods with a selected parent, both with load condition ALWAYS
+
+		for (List<ModCandidateImpl> variants : modsById.values()) {
+			if (variants.contains(selectedMods.get(variants.get(0).getId()))) continue;
+
+			for (ModCandidateImpl mod : variants) {
+				if (mod.getLoadCondition() == ModLoadCondition.ALWAYS
+						&& (mod.isRoot() || ModSolver.isAnyParentSelected(mod, selectedMods))) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private static int[] load(Path file, byte[] key) {
+		try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) { // available() is exact
+			if (is.readInt() != FORMAT_VERSION) return null;
+
+			byte[] cachedKey = new byte[readCount(is, 1)];
+			is.readFully(cachedKey);
+			if (!Arrays.equals(cachedKey, key)) return null;
+
+			int[] ret = new int[readCount(is, Integer.BYTES)];
+
+			for (int i = 0; i < ret.length; i++) {
+				ret[i] = is.readInt();
+			}
+
+			return ret;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException | RuntimeException e) { // the cache must never prevent resolution
+			Log.debug(LogCategory.RESOLUTION, "Discarding unreadable mod resolution cache %s: %s", file, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Read an element count, rejecting counts the remaining data can't hold.
+	 */
+	private static int readCount(DataInputStream is, int elementSize) throws IOException {
+		int ret = is.readInt();
+		if (ret < 0 || (long) ret * elementSize > is.available()) throw new IOException("invalid count: "+ret);
+
+		return ret;
+	}
+
+	/**
+	 * Store the mods selected by the solver, referenced by their index in allModsSorted.
+	 */
+	static void save(Path file, byte[] key, List<ModCandidateImpl> allModsSorted, List<ModCandidateImpl> solvedMods) {
+		Map<ModCandidateImpl, Integer> indices = new IdentityHashMap<>(allModsSorted.size());
+
+		for (int i = 0; i < allModsSorted.size(); i++) {
+			indices.put(allModsSorted.get(i), i);
+		}
+
+		Path tmpFile = null;
+
+		try {
+			Files.createDirectories(file.getParent());
+			tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+			try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+				os.writeInt(FORMAT_VERSION);
+				os.writeInt(key.length);
+				os.write(key);
+				os.writeInt(solvedMods.size());
+
+				for (ModCandidateImpl mod : solvedMods) {
+					os.writeInt(indices.get(mod));
+				}
+			}
+
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			tmpFile = null;
+		} catch (IOException e) {
+			Log.warn(LogCategory.RESOLUTION, "Error writing mod resolution cache %s", file, e);
+		} finally {
+			if (tmpFile != null) {
+				try {
+					Files.deleteIfExists(tmpFile);
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+}
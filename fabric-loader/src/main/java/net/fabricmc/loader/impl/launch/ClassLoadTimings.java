@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.launch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import net.fabricmc.loader.impl.FabricLoaderImpl;
+import net.fabricmc.loader.impl.ModContainerImpl;
+import net.fabricmc.loader.impl.util.JsonUtil;
+import net.fabricmc.loader.impl.util.LoaderUtil;
+
+/**
+ * Per-class load timings collected by the launcher, split into the pipeline's phases.
+ *
+ * <p>Only the work done for a class definition is attributed to it. Class bytes Mixin requests for other classes
+ * while transforming one are part of that class' mixin phase.
+ */
+public final class ClassLoadTimings {
+	public enum Phase {
+		READ("read"),
+		GAME_TRANSFORM("gameTransform"),
+		FABRIC_TRANSFORM("fabricTransform"),
+		MIXIN("mixin");
+
+		private final String key;
+
+		Phase(String key) {
+			this.key = key;
+		}
+
+		public String getKey() {
+			return key;
+		}
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+	private static final String UNKNOWN_SOURCE = "<none>";
+
+	private final Queue<ClassTiming> classes = new ConcurrentLinkedQueue<>();
+	private volatile boolean recording = true;
+
+	/**
+	 * Start timing a class load, the returned object is expected to be used by a single thread.
+	 *
+	 * @param codeSource the class file's code source, null if it doesn't have one
+	 */
+	public ClassTiming start(String name, Path codeSource) {
+		return new ClassTiming(name, codeSource);
+	}
+
+	/**
+	 * Include a class load after the class got defined.
+	 */
+	public void finish(ClassTiming timing) {
+		if (recording) classes.add(timing);
+	}
+
+	public boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * Stop including class loads, keeps the timings from growing for the rest of the game's runtime.
+	 */
+	public void stopRecording() {
+		recording = false;
+	}
+
+	public int getClassCount() {
+		return classes.size();
+	}
+
+	public long getTotalNanos(Phase phase) {
+		long ret = 0;
+
+		for (ClassTiming timing : classes) {
+			ret += timing.nanos[phase.ordinal()];
+		}
+
+		return ret;
+	}
+
+	public List<ClassTiming> getSlowestClasses(int count) {
+		List<ClassTiming> ret = new ArrayList<>(classes);
+		ret.sort(Comparator.comparingLong(ClassTiming::getTotalNanos).reversed());
+
+		return ret.size() > count ? new ArrayList<>(ret.subList(0, count)) : ret;
+	}
+
+	/**
+	 * Aggregate by the mod providing the class file, classes outside any mod are grouped by code source.
+	 */
+	public List<Aggregate> getModAggregates() {
+		Map<Path, String> modIds = new HashMap<>();
+
+		for (ModContainerImpl mod : FabricLoaderImpl.INSTANCE.getModsInternal()) {
+			for (Path path : mod.getCodeSourcePaths()) {
+				modIds.putIfAbsent(LoaderUtil.normalizePath(path), mod.getMetadata().getId());
+			}
+		}
+
+		Map<String, Aggregate> ret = new HashMap<>();
+
+		for (ClassTiming timing : classes) {
+			String key;
+
+			if (timing.codeSource == null) {
+				key = UNKNOWN_SOURCE;
+			} else {
+				key = modIds.get(timing.codeSource);
+				if (key == null) key = timing.codeSource.toString();
+			}
+
+			ret.computeIfAbsent(key, Aggregate::new).add(timing);
+		}
+
+		return sort(ret.values());
+	}
+
+	public List<Aggregate> getPackageAggregates() {
+		Map<String, Aggregate> ret = new HashMap<>();
+
+		for (ClassTiming timing : classes) {
+			int pos = timing.name.lastIndexOf('.');
+			String pkg = pos > 0 ? timing.name.substring(0, pos) : "";
+
+			ret.computeIfAbsent(pkg, Aggregate::new).add(timing);
+		}
+
+		return sort(ret.values());
+	}
+
+	private static List<Aggregate> sort(Collection<Aggregate> aggregates) {
+		List<Aggregate> ret = new ArrayList<>(aggregates);
+		ret.sort(Comparator.comparingLong(Aggregate::getTotalNanos).reversed());
+
+		return ret;
+	}
+
+	/**
+	 * Write a JSON report with the totals, the mod and package aggregates and the slowest classes, times in ms.
+	 */
+	public void writeJson(Writer writer, int slowestClassCount) throws IOException {
+		writer.write("{\n\t\"classes\": ");
+		writer.write(Integer.toString(getClassCount()));
+		writer.write(",\n\t\"times\": {");
+
+		for (int i = 0; i < PHASES.length; i++) {
+			if (i > 0) writer.write(", ");
+			JsonUtil.writeString(writer, PHASES[i].key);
+			writer.write(": ");
+			JsonUtil.writeMillis(writer, getTotalNanos(PHASES[i]));
+		}
+
+		writer.write("},\n\t\"mods\": [");
+		writeAggregates(writer, getModAggregates());
+		writer.write("],\n\t\"packages\": [");
+		writeAggregates(writer, getPackageAggregates());
+		writer.write("],\n\t\"slowestClasses\": [");
+
+		boolean first = true;
+
+		for (ClassTiming timing : getSlowestClasses(slowestClassCount)) {
+			writer.write(first ? "\n\t\t{\"name\": " : ",\n\t\t{\"name\": ");
+			first = false;
+			JsonUtil.writeString(writer, timing.name);
+			writer.write(", \"source\": ");
+			JsonUtil.writeString(writer, timing.codeSource != null ? timing.codeSource.toString() : UNKNOWN_SOURCE);
+			writeTimes(writer, timing.nanos);
+			writer.write('}');
+		}
+
+		writer.write(first ? "]\n}\n" : "\n\t]\n}\n");
+	}
+
+	private static void writeAggregates(Writer writer, List<Aggregate> aggregates) throws IOException {
+		boolean first = true;
+
+		for (Aggregate aggregate : aggregates) {
+			writer.write(first ? "\n\t\t{\"name\": " : ",\n\t\t{\"name\": ");
+			first = false;
+			JsonUtil.writeString(writer, aggregate.name);
+			writer.write(", \"classes\": ");
+			writer.write(Integer.toString(aggregate.classCount));
+			writeTimes(writer, aggregate.nanos);
+			writer.write('}');
+		}
+
+		if (!first) writer.write("\n\t");
+	}
+
+	private static void writeTimes(Writer writer, long[] nanos) throws IOException {
+		for (Phase phase : PHASES) {
+			writer.write(", ");
+			JsonUtil.writeString(writer, phase.key);
+			writer.write(": ");
+			JsonUtil.writeMillis(writer, nanos[phase.ordinal()]);
+		}
+	}
+
+	public static final class ClassTiming {
+		final String name;
+		final Path codeSource;
+		final long[] nanos = new long[PHASES.length];
+
+		ClassTiming(String name, Path codeSource) {
+			this.name = name;
+			this.codeSource = codeSource;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Path getCodeSource() {
+			return codeSource;
+		}
+
+		public long getNanos(Phase phase) {
+			return nanos[phase.ordinal()];
+		}
+
+		public long getTotalNanos() {
+			long ret = 0;
+
+			for (long n : nanos) {
+				ret += n;
+			}
+
+			return ret;
+		}
+
+		public void add(Phase phase, long nanos) {
+			this.nanos[phase.ordinal()] += nanos;
+		}
+	}
+
+	public static final class Aggregate {
+		final String name;
+		final long[] nanos = new long[PHASES.length];
+		int classCount;
+
+		Aggregate(String name) {
+			this.name = name;
+		}
+
+		void add(ClassTiming timing) {
+			classCount++;
+
+			for (int i = 0; i < nanos.length; i++) {
+				nanos[i] += timing.nanos[i];
+			}
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getClassCount() {
+			return classCount;
+		}
+
+		public long getNanos(Phase phase) {
+			return nanos[phase.ordinal()];
+		}
+
+		public long getTotalNanos() {
+			long ret = 0;
+
+			for (long n : nanos) {
+				ret += n;
+			}
+
+			return ret;
+		}
+	}
+}
@@ -59,6 +59,22 @@ public interface FabricLauncher {
 
 	String getEntrypoint();
 
+	/**
+	 * Notifies the launcher that the game finished starting up, i.e. all the mod initializers ran.
+	 */
+	void finishStartup();
+
+	/**
+	 * Gets the timings of the class loads during startup, split into the class loading pipeline's phases.
+	 *
+	 * <p>Only available if enabled through {@link net.fabricmc.loader.impl.util.SystemProperties#DEBUG_CLASS_LOAD_TIMINGS},
+	 * the timings are also written to {@code .fabric/classLoadTimings.json} at the end of startup in this case, which
+	 * also stops recording them.
+	 *
+	 * @return the timings or null if unavailable
+	 */
+	ClassLoadTimings getClassLoadTimings();
+
 	String getTargetNamespace();
 
 	List<Path> getClassPath();
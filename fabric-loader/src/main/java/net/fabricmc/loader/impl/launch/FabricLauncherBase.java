@@ -142,6 +142,14 @@ public abstract class FabricLauncherBase implements FabricLauncher {
 		mixinReady = true;
 	}
 
+	@Override
+	public void finishStartup() { }
+
+	@Override
+	public ClassLoadTimings getClassLoadTimings() {
+		return null;
+	}
+
 	public static boolean isMixinReady() {
 		return mixinReady;
 	}
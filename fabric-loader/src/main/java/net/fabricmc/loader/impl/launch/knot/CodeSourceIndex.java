@@ -0,0 +1,376 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.launch.knot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.fabricmc.loader.impl.util.UrlUtil;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Package index over the class loader's code sources, replacing the linear probing done by URLClassLoader.
+ *
+ * <p>Every jar is scanned once when added, recording which packages (directories) it has entries in. A lookup
+ * then only probes the code sources known to have the resource's package, in the order they were added, which
+ * keeps URLClassLoader's shadowing semantics. Directories aren't indexed since their content may change at
+ * runtime, they are probed for every lookup instead.
+ */
+final class CodeSourceIndex {
+	private static final Source[] NO_SOURCES = new Source[0];
+	private static final String VERSIONS_DIR = "META-INF/versions/";
+	private static final int JAVA_VERSION = getJavaVersion();
+
+	private final Map<String, Source[]> packageSources = new ConcurrentHashMap<>();
+	private final Set<Path> paths = new HashSet<>();
+	private volatile Source[] dirSources = NO_SOURCES;
+
+	/**
+	 * Add a code source after all the existing ones.
+	 */
+	synchronized void add(Path path) {
+		if (!paths.add(path)) return;
+
+		if (Files.isDirectory(path)) {
+			Source source;
+
+			try {
+				source = new DirSource(path);
+			} catch (MalformedURLException e) {
+				throw new RuntimeException(e);
+			}
+
+			// dirs apply to every package, including ones only added later
+			dirSources = append(dirSources, source);
+
+			for (Map.Entry<String, Source[]> entry : packageSources.entrySet()) {
+				entry.setValue(append(entry.getValue(), source));
+			}
+		} else {
+			JarSource source;
+
+			try {
+				source = new JarSource(path);
+			} catch (IOException e) {
+				Log.warn(LogCategory.KNOT, "Can't open code source %s, its content won't be available", path, e);
+				return;
+			}
+
+			for (String pkg : source.getPackages()) {
+				Source[] sources = packageSources.get(pkg);
+				packageSources.put(pkg, append(sources != null ? sources : dirSources, source));
+			}
+		}
+	}
+
+	/**
+	 * Find the first code source containing the resource.
+	 */
+	Source findSource(String name) {
+		for (Source source : getCandidates(name)) {
+			if (source.contains(name)) return source;
+		}
+
+		return null;
+	}
+
+	URL findResource(String name) {
+		Source source = findSource(name);
+
+		return source != null ? source.getUrl(name) : null;
+	}
+
+	Enumeration<URL> findResources(String name) {
+		List<URL> ret = null;
+
+		for (Source source : getCandidates(name)) {
+			if (source.contains(name)) {
+				if (ret == null) ret = new ArrayList<>();
+				ret.add(source.getUrl(name));
+			}
+		}
+
+		return ret != null ? Collections.enumeration(ret) : Collections.emptyEnumeration();
+	}
+
+	private Source[] getCandidates(String name) {
+		Source[] ret = packageSources.get(getPackage(name));
+
+		return ret != null ? ret : dirSources;
+	}
+
+	private static String getPackage(String name) {
+		int end = name.length();
+		if (end > 0 && name.charAt(end - 1) == '/') end--; // directory entry, belongs to its parent
+
+		int pos = name.lastIndexOf('/', end - 1);
+
+		return pos > 0 ? name.substring(0, pos) : "";
+	}
+
+	private static Source[] append(Source[] sources, Source source) {
+		Source[] ret = Arrays.copyOf(sources, sources.length + 1);
+		ret[sources.length] = source;
+
+		return ret;
+	}
+
+	abstract static class Source {
+		final Path path;
+		private final String baseUrl;
+
+		Source(Path path, URL baseUrl) {
+			this.path = path;
+			this.baseUrl = baseUrl.toString();
+		}
+
+		abstract boolean contains(String name);
+
+		/**
+		 * Read a resource's content, null if it doesn't exist.
+		 */
+		abstract byte[] read(String name) throws IOException;
+
+		URL getUrl(String name) {
+			try {
+				return new URL(baseUrl.concat(encodePath(name)));
+			} catch (MalformedURLException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static final class DirSource extends Source {
+		DirSource(Path path) throws MalformedURLException {
+			super(path, UrlUtil.asUrl(path));
+		}
+
+		@Override
+		boolean contains(String name) {
+			Path file;
+
+			try {
+				file = path.resolve(name).normalize();
+			} catch (InvalidPathException e) {
+				return false;
+			}
+
+			return file.startsWith(path) && Files.exists(file);
+		}
+
+		@Override
+		byte[] read(String name) throws IOException {
+			Path file;
+
+			try {
+				file = path.resolve(name).normalize();
+			} catch (InvalidPathException e) {
+				return null;
+			}
+
+			if (!file.startsWith(path)) return null;
+
+			try {
+				return Files.readAllBytes(file);
+			} catch (NoSuchFileException e) {
+				return null;
+			}
+		}
+	}
+
+	private static final class JarSource extends Source {
+		private final ZipFile zipFile;
+		private final int[] versions; // applicable multi-release versions, descending
+
+		JarSource(Path path) throws IOException {
+			super(path, new URL("jar:" + path.toUri() + "!/"));
+
+			this.zipFile = new ZipFile(path.toFile());
+			this.versions = getVersions(zipFile);
+		}
+
+		@Override
+		boolean contains(String name) {
+			return getEntry(name) != null;
+		}
+
+		@Override
+		byte[] read(String name) throws IOException {
+			ZipEntry entry = getEntry(name);
+			if (entry == null) return null;
+
+			long size = entry.getSize();
+
+			try (InputStream is = zipFile.getInputStream(entry)) {
+				if (size < 0 || size > Integer.MAX_VALUE - 8) { // size not known upfront, shouldn't happen for ZipFile
+					return readFully(is);
+				}
+
+				byte[] ret = new byte[(int) size];
+				int pos = 0;
+				int len;
+
+				while (pos < ret.length && (len = is.read(ret, pos, ret.length - pos)) > 0) {
+					pos += len;
+				}
+
+				if (pos != ret.length) throw new IOException("truncated entry "+name+" in "+path);
+
+				return ret;
+			}
+		}
+
+		/**
+		 * Get the entry a resource name resolves to, taking multi-release overrides into account.
+		 */
+		private ZipEntry getEntry(String name) {
+			for (int version : versions) {
+				ZipEntry ret = zipFile.getEntry(VERSIONS_DIR + version + "/" + name);
+				if (ret != null) return ret;
+			}
+
+			return zipFile.getEntry(name);
+		}
+
+		Set<String> getPackages() {
+			Set<String> ret = new HashSet<>();
+
+			for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); ) {
+				String name = e.nextElement().getName();
+
+				if (versions.length > 0 && name.startsWith(VERSIONS_DIR)) { // index versioned entries under their unversioned name
+					int pos = name.indexOf('/', VERSIONS_DIR.length());
+					if (pos < 0) continue;
+
+					try {
+						int version = Integer.parseInt(name.substring(VERSIONS_DIR.length(), pos));
+						if (version <= JAVA_VERSION) name = name.substring(pos + 1);
+					} catch (NumberFormatException ex) {
+						// not a version dir
+					}
+				}
+
+				ret.add(getPackage(name));
+			}
+
+			return ret;
+		}
+
+		private static int[] getVersions(ZipFile zipFile) throws IOException {
+			if (JAVA_VERSION < 9) return new int[0];
+
+			ZipEntry entry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+			if (entry == null) return new int[0];
+
+			Manifest manifest;
+
+			try (InputStream is = zipFile.getInputStream(entry)) {
+				manifest = new Manifest(is);
+			}
+
+			if (!"true".equalsIgnoreCase(manifest.getMainAttributes().getValue(new Attributes.Name("Multi-Release")))) return new int[0];
+
+			int[] ret = new int[JAVA_VERSION - 8];
+
+			for (int i = 0; i < ret.length; i++) {
+				ret[i] = JAVA_VERSION - i;
+			}
+
+			return ret;
+		}
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream(32768);
+		byte[] buffer = new byte[8192];
+		int len;
+
+		while ((len = is.read(buffer)) > 0) {
+			os.write(buffer, 0, len);
+		}
+
+		return os.toByteArray();
+	}
+
+	/**
+	 * Percent-encode a resource name the same way URLClassLoader does for the URLs it returns.
+	 */
+	private static String encodePath(String name) {
+		StringBuilder ret = null;
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+
+			if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+					|| c < 0x80 && "/-_.!~*'();:@&=+$,".indexOf(c) >= 0) {
+				if (ret != null) ret.append(c);
+			} else {
+				if (ret == null) {
+					ret = new StringBuilder(name.length() + 16);
+					ret.append(name, 0, i);
+				}
+
+				int end = Character.isHighSurrogate(c) && i + 1 < name.length() ? i + 2 : i + 1;
+
+				for (byte b : name.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+					ret.append('%');
+					ret.append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)));
+					ret.append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+				}
+
+				i = end - 1;
+			}
+		}
+
+		return ret != null ? ret.toString() : name;
+	}
+
+	private static int getJavaVersion() {
+		String version = System.getProperty("java.specification.version");
+		if (version.startsWith("1.")) version = version.substring(2);
+
+		try {
+			return Integer.parseInt(version);
+		} catch (NumberFormatException e) {
+			return 8;
+		}
+	}
+}
@@ -41,8 +41,10 @@ import net.fabricmc.loader.api.entrypoint.PreLaunchEntrypoint;
 import net.fabricmc.loader.impl.FabricLoaderImpl;
 import net.fabricmc.loader.impl.FormattedException;
 import net.fabricmc.loader.impl.game.GameProvider;
+import net.fabricmc.loader.impl.launch.ClassLoadTimings;
 import net.fabricmc.loader.impl.launch.FabricLauncherBase;
 import net.fabricmc.loader.impl.launch.FabricMixinBootstrap;
+import net.fabricmc.loader.impl.transformer.GameJarBaker;
 import net.fabricmc.loader.impl.util.LoaderUtil;
 import net.fabricmc.loader.impl.util.SystemProperties;
 import net.fabricmc.loader.impl.util.UrlUtil;
@@ -51,6 +53,7 @@ import net.fabricmc.loader.impl.util.log.LogCategory;
 
 public final class Knot extends FabricLauncherBase {
 	private static final boolean IS_DEVELOPMENT = Boolean.parseBoolean(System.getProperty(SystemProperties.DEVELOPMENT, "false"));
+	private static final boolean BAKE_GAME_JARS = System.getProperty(SystemProperties.BAKE_GAME_JARS) != null;
 
 	protected Map<String, Object> properties = new HashMap<>();
 
@@ -59,6 +62,7 @@ public final class Knot extends FabricLauncherBase {
 	private final List<Path> classPath = new ArrayList<>();
 	private GameProvider provider;
 	private boolean unlocked;
+	private boolean bakeJars;
 
 	public static void launch(String[] args, EnvType type) {
 		setupUncaughtExceptionHandler();
@@ -147,6 +151,7 @@ public final class Knot extends FabricLauncherBase {
 		loader.freeze();
 
 		FabricLoaderImpl.INSTANCE.loadAccessWideners();
+		bakeJars = BAKE_GAME_JARS && !isDevelopment(); // game jars added from now on see the final access wideners
 
 		FabricMixinBootstrap.init(getEnvironmentType(), loader);
 		FabricLauncherBase.finishMixinBootstrapping();
@@ -162,6 +167,8 @@ public final class Knot extends FabricLauncherBase {
 			throw FormattedException.ofLocalized("exception.initializerFailure", e);
 		}
 
+		classLoader.startWarmup();
+
 		return cl;
 	}
 
@@ -269,6 +276,19 @@ public final class Knot extends FabricLauncherBase {
 	public void addToClassPath(Path path, String... allowedPrefixes) {
 		Log.debug(LogCategory.KNOT, "Adding " + path + " to classpath.");
 
+		if (bakeJars) {
+			Path cacheDir = FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(FabricLoaderImpl.BAKED_JARS_DIR_NAME);
+			Path bakedPath = GameJarBaker.bake(path, cacheDir, envType);
+
+			if (bakedPath != null) {
+				Log.debug(LogCategory.KNOT, "Using baked jar %s for %s", bakedPath, path);
+
+				classLoader.setAllowedPrefixes(bakedPath, allowedPrefixes);
+				classLoader.addBakedCodeSource(bakedPath);
+				return;
+			}
+		}
+
 		classLoader.setAllowedPrefixes(path, allowedPrefixes);
 		classLoader.addCodeSource(path);
 	}
@@ -336,6 +356,16 @@ public final class Knot extends FabricLauncherBase {
 		return provider.getEntrypoint();
 	}
 
+	@Override
+	public void finishStartup() {
+		classLoader.finishStartup();
+	}
+
+	@Override
+	public ClassLoadTimings getClassLoadTimings() {
+		return classLoader.getClassLoadTimings();
+	}
+
 	public static void main(String[] args) {
 		new Knot(null).init(args);
 	}
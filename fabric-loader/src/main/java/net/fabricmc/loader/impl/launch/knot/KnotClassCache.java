@@ -0,0 +1,286 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.launch.knot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.impl.FabricLoaderImpl;
+import net.fabricmc.loader.impl.ModContainerImpl;
+import net.fabricmc.loader.impl.game.GameProvider;
+import net.fabricmc.loader.impl.launch.FabricLauncherBase;
+import net.fabricmc.loader.impl.metadata.LoaderModMetadata;
+import net.fabricmc.loader.impl.util.HashUtil;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Persistent cache for the output of the non-mixin class transformers, keyed by the raw class bytes.
+ *
+ * <p>All entries live in a directory named after a digest of everything else the transformation output depends on
+ * (loader version, game, mod set, mixin configs, access wideners). A different digest discards the whole cache.
+ *
+ * <p>Mixin's output isn't cached by default since it also depends on state outside of the key, e.g. config plugin
+ * decisions or configs added programmatically, and Mixin tracks state for every class it transforms. The Mixin AOT
+ * mode opts out of this and stores Mixin's output as well.
+ */
+final class KnotClassCache {
+	private static final int FORMAT_VERSION = 3;
+	private static final byte FLAG_POST_MIXIN = 1;
+
+	private final Path dir;
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final AtomicInteger writes = new AtomicInteger();
+	private volatile boolean writeFailed;
+
+	static KnotClassCache create(Path cacheDir, FabricLoaderImpl loader, EnvType envType) {
+		String key;
+
+		try {
+			key = computeKey(loader, envType);
+		} catch (IOException e) {
+			Log.warn(LogCategory.KNOT, "Can't compute class cache key, disabling class cache", e);
+			return null;
+		}
+
+		Path dir = cacheDir.resolve(key);
+
+		try {
+			Files.createDirectories(cacheDir);
+
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+				for (Path path : stream) {
+					if (!path.equals(dir)) {
+						Log.debug(LogCategory.KNOT, "Discarding outdated class cache %s", path.getFileName());
+						deleteRecursively(path);
+					}
+				}
+			}
+
+			Files.createDirectories(dir);
+		} catch (IOException e) {
+			Log.warn(LogCategory.KNOT, "Can't set up class cache at %s, disabling class cache", cacheDir, e);
+			return null;
+		}
+
+		Log.debug(LogCategory.KNOT, "Using class cache %s", dir);
+
+		return new KnotClassCache(dir);
+	}
+
+	private KnotClassCache(Path dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Look up the cached transformer output for the supplied raw class bytes.
+	 *
+	 * @return the cache entry or null if there is none
+	 */
+	Entry get(byte[] rawHash) {
+		Path file = getFile(rawHash);
+		byte[] data;
+
+		try {
+			data = Files.readAllBytes(file);
+		} catch (NoSuchFileException e) {
+			misses.incrementAndGet();
+			return null;
+		} catch (IOException e) {
+			Log.debug(LogCategory.KNOT, "Error reading class cache entry %s: %s", file, e);
+			misses.incrementAndGet();
+			return null;
+		}
+
+		if (data.length < 1) { // truncated, shouldn't happen due to the atomic move
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+
+		if ((data[0] & FLAG_POST_MIXIN) == 0) {
+			return new Entry(Arrays.copyOfRange(data, 1, data.length), null);
+		}
+
+		int preMixinEnd = 5 + ByteBuffer.wrap(data, 1, 4).getInt();
+
+		return new Entry(Arrays.copyOfRange(data, 5, preMixinEnd), Arrays.copyOfRange(data, preMixinEnd, data.length));
+	}
+
+	/**
+	 * Store the transformer output for the supplied raw class bytes.
+	 *
+	 * @param postMixinBytes Mixin's output to store as well, or null to have it always pass through Mixin
+	 */
+	void put(byte[] rawHash, byte[] preMixinBytes, byte[] postMixinBytes) {
+		if (writeFailed) return;
+
+		Path file = getFile(rawHash);
+		Path tmpFile = null;
+
+		try {
+			Files.createDirectories(file.getParent());
+			tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+			byte[] data;
+
+			if (postMixinBytes == null) {
+				data = new byte[preMixinBytes.length + 1];
+				System.arraycopy(preMixinBytes, 0, data, 1, preMixinBytes.length);
+			} else {
+				ByteBuffer buffer = ByteBuffer.allocate(5 + preMixinBytes.length + postMixinBytes.length);
+				buffer.put(FLAG_POST_MIXIN);
+				buffer.putInt(preMixinBytes.length);
+				buffer.put(preMixinBytes);
+				buffer.put(postMixinBytes);
+				data = buffer.array();
+			}
+
+			Files.write(tmpFile, data);
+
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			tmpFile = null;
+			writes.incrementAndGet();
+		} catch (IOException e) {
+			writeFailed = true;
+			Log.warn(LogCategory.KNOT, "Error writing class cache entry %s, no further entries will be written", file, e);
+		} finally {
+			if (tmpFile != null) {
+				try {
+					Files.deleteIfExists(tmpFile);
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	static byte[] hash(byte[] rawBytes) {
+		return HashUtil.hash(rawBytes);
+	}
+
+	void logStats() {
+		Log.debug(LogCategory.KNOT, "Class cache: %d hits, %d misses, %d entries written", hits.get(), misses.get(), writes.get());
+	}
+
+	private Path getFile(byte[] rawHash) {
+		String name = HashUtil.toHex(rawHash);
+
+		// shard by the first byte to keep the directories reasonably small
+		return dir.resolve(name.substring(0, 2)).resolve(name.substring(2));
+	}
+
+	/**
+	 * Compute a digest of all the inputs that may affect the transformation result other than the class itself.
+	 */
+	private static String computeKey(FabricLoaderImpl loader, EnvType envType) throws IOException {
+		MessageDigest digest = HashUtil.createDigest();
+		GameProvider provider = loader.getGameProvider();
+
+		HashUtil.update(digest, FORMAT_VERSION);
+		HashUtil.update(digest, FabricLoaderImpl.VERSION);
+		HashUtil.update(digest, envType.name());
+		HashUtil.update(digest, provider.getGameId());
+		HashUtil.update(digest, provider.getRawGameVersion());
+		HashUtil.update(digest, FabricLauncherBase.getLauncher().getTargetNamespace());
+		HashUtil.update(digest, FabricLauncherBase.getLauncher().getMappingConfiguration().requiresPackageAccessHack() ? 1 : 0);
+
+		for (ModContainerImpl mod : loader.getModsInternal()) {
+			LoaderModMetadata metadata = mod.getMetadata();
+
+			HashUtil.update(digest, metadata.getId());
+			HashUtil.update(digest, metadata.getVersion().getFriendlyString());
+
+			for (Path path : mod.getCodeSourcePaths()) {
+				HashUtil.update(digest, path.toString());
+
+				if (Files.exists(path)) {
+					HashUtil.update(digest, Files.size(path));
+					HashUtil.update(digest, Files.getLastModifiedTime(path).toMillis());
+				}
+			}
+
+			for (String config : metadata.getMixinConfigs(envType)) {
+				HashUtil.update(digest, config);
+			}
+
+			String accessWidener = metadata.getAccessWidener();
+
+			if (accessWidener != null) {
+				HashUtil.update(digest, accessWidener);
+
+				Path path = mod.findPath(accessWidener).orElse(null);
+				if (path != null) digest.update(HashUtil.hash(path));
+			}
+		}
+
+		return HashUtil.toHex(digest.digest()).substring(0, 16);
+	}
+
+	private static void deleteRecursively(Path path) throws IOException {
+		if (!Files.isDirectory(path)) {
+			Files.deleteIfExists(path);
+			return;
+		}
+
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				if (exc != null) throw exc;
+
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	static final class Entry {
+		final byte[] preMixinBytes;
+		final byte[] postMixinBytes; // only stored in Mixin AOT mode
+
+		Entry(byte[] preMixinBytes, byte[] postMixinBytes) {
+			this.preMixinBytes = preMixinBytes;
+			this.postMixinBytes = postMixinBytes;
+		}
+	}
+}
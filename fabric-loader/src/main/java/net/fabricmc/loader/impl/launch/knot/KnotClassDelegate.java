@@ -17,13 +17,16 @@
 package net.fabricmc.loader.impl.launch.knot;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.net.JarURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -40,9 +43,14 @@ import java.util.jar.Manifest;
 import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
 
 import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.impl.FabricLoaderImpl;
 import net.fabricmc.loader.impl.game.GameProvider;
+import net.fabricmc.loader.impl.launch.ClassLoadTimings;
+import net.fabricmc.loader.impl.launch.ClassLoadTimings.ClassTiming;
+import net.fabricmc.loader.impl.launch.ClassLoadTimings.Phase;
 import net.fabricmc.loader.impl.launch.FabricLauncherBase;
 import net.fabricmc.loader.impl.launch.knot.KnotClassDelegate.ClassLoaderAccess;
+import net.fabricmc.loader.impl.transformer.EnvironmentStrippingIndex;
 import net.fabricmc.loader.impl.transformer.FabricTransformer;
 import net.fabricmc.loader.impl.util.ExceptionUtil;
 import net.fabricmc.loader.impl.util.FileSystemUtil;
@@ -59,6 +67,14 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 	private static final boolean LOG_CLASS_LOAD_ERRORS = LOG_CLASS_LOAD || System.getProperty(SystemProperties.DEBUG_LOG_CLASS_LOAD_ERRORS) != null;
 	private static final boolean LOG_TRANSFORM_ERRORS = System.getProperty(SystemProperties.DEBUG_LOG_TRANSFORM_ERRORS) != null;
 	private static final boolean DISABLE_ISOLATION = System.getProperty(SystemProperties.DEBUG_DISABLE_CLASS_PATH_ISOLATION) != null;
+	private static final boolean DISABLE_CLASS_CACHE = System.getProperty(SystemProperties.DISABLE_CLASS_CACHE) != null;
+	private static final boolean CLASS_WARMUP = System.getProperty(SystemProperties.CLASS_WARMUP) != null;
+	private static final boolean MIXIN_AOT = System.getProperty(SystemProperties.MIXIN_AOT) != null;
+	private static final boolean CLASS_LOAD_TIMINGS = System.getProperty(SystemProperties.DEBUG_CLASS_LOAD_TIMINGS) != null;
+	private static final boolean MIXIN_AUDIT = System.getProperty(SystemProperties.DEBUG_MIXIN_AUDIT) != null;
+	private static final int SLOWEST_CLASS_COUNT = 100;
+	private static final String TIMINGS_FILE_NAME = "classLoadTimings.json"; // relative to cache dir
+	private static final String MIXIN_AUDIT_FILE_NAME = "mixinAudit.json"; // relative to cache dir
 
 	static final class Metadata {
 		static final Metadata EMPTY = new Metadata(null, null);
@@ -81,11 +97,18 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 	private final boolean isDevelopment;
 	private final EnvType envType;
 	private IMixinTransformer mixinTransformer;
+	private KnotClassCache classCache;
+	private KnotClassWarmup warmup;
+	private KnotMixinAot mixinAot;
+	private EnvironmentStrippingIndex environmentStrippingIndex;
+	private final ClassLoadTimings timings = CLASS_LOAD_TIMINGS ? new ClassLoadTimings() : null;
+	private volatile KnotMixinAudit mixinAudit = MIXIN_AUDIT ? new KnotMixinAudit() : null; // cleared after startup
 	private boolean transformInitialized = false;
 	private volatile Set<Path> codeSources = Collections.emptySet();
 	private volatile Set<Path> validParentCodeSources = null; // null = disabled isolation, game provider has to set it to opt in
 	private final Map<Path, String[]> allowedPrefixes = new ConcurrentHashMap<>();
 	private final Set<String> parentSourcedClasses = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final Set<Path> bakedCodeSources = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
 	KnotClassDelegate(boolean isDevelopment, EnvType envType, T classLoader, ClassLoader parentClassLoader, GameProvider provider) {
 		this.isDevelopment = isDevelopment;
@@ -120,7 +143,82 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 			}
 		}
 
+		if (!isDevelopment && !DISABLE_CLASS_CACHE) { // dev class dirs can change without any cheap way to notice
+			FabricLoaderImpl loader = FabricLoaderImpl.INSTANCE;
+			Path cacheDir = loader.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(FabricLoaderImpl.CLASS_CACHE_DIR_NAME);
+			classCache = KnotClassCache.create(cacheDir, loader, envType);
+		}
+
+		environmentStrippingIndex = FabricLoaderImpl.INSTANCE.getEnvironmentStrippingIndex();
+
+		if (CLASS_WARMUP) {
+			Path listDir = FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(FabricLoaderImpl.CLASS_LIST_DIR_NAME);
+			warmup = new KnotClassWarmup(listDir, envType);
+		}
+
+		if (MIXIN_AOT) mixinAot = new KnotMixinAot();
+		if (mixinAudit != null) MixinServiceKnot.auditTrail = mixinAudit;
+
 		transformInitialized = true;
+		MixinServiceKnot.clearClassBytes(); // may hold bytes read without the transformers
+	}
+
+	@Override
+	public void startWarmup() {
+		if (mixinAot != null) mixinAot.start(classLoader, this::transformAheadOfTime, cls -> classLoader.findLoadedClassFwd(cls) != null);
+		if (warmup != null) warmup.start(classLoader);
+	}
+
+	@Override
+	public void finishStartup() {
+		if (classCache != null) classCache.logStats();
+		if (mixinAot != null) mixinAot.finish();
+		if (warmup != null) warmup.finish();
+		if (timings != null) writeTimings();
+		if (mixinAudit != null) writeMixinAudit();
+	}
+
+	private void writeTimings() {
+		timings.stopRecording(); // the report covers startup, later loads would only accumulate
+
+		Path file = FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(TIMINGS_FILE_NAME);
+
+		try {
+			Files.createDirectories(file.getParent());
+
+			try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+				timings.writeJson(writer, SLOWEST_CLASS_COUNT);
+			}
+
+			Log.info(LogCategory.KNOT, "Wrote timings for %d class loads to %s", timings.getClassCount(), file);
+		} catch (IOException e) {
+			Log.warn(LogCategory.KNOT, "Error writing class load timings to %s", file, e);
+		}
+	}
+
+	private void writeMixinAudit() {
+		KnotMixinAudit mixinAudit = this.mixinAudit;
+		this.mixinAudit = null; // the report covers startup, later transformations would only accumulate
+		MixinServiceKnot.auditTrail = null;
+
+		Path file = FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(MIXIN_AUDIT_FILE_NAME);
+
+		try {
+			Files.createDirectories(file.getParent());
+
+			try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+				mixinAudit.writeJson(writer);
+			}
+
+			Log.info(LogCategory.KNOT, "Wrote mixin audit to %s", file);
+		} catch (IOException e) {
+			Log.warn(LogCategory.KNOT, "Error writing mixin audit to %s", file, e);
+		}
+	}
+
+	@Override
+	public ClassLoadTimings getClassLoadTimings() {
+		return timings;
 	}
 
 	private IMixinTransformer getMixinTransformer() {
@@ -144,7 +242,7 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 		}
 
 		try {
-			classLoader.addUrlFwd(UrlUtil.asUrl(path));
+			classLoader.addCodeSourceFwd(path);
 		} catch (MalformedURLException e) {
 			throw new RuntimeException(e);
 		}
@@ -152,6 +250,12 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 		if (LOG_CLASS_LOAD_ERRORS) Log.info(LogCategory.KNOT, "added code source %s", path);
 	}
 
+	@Override
+	public void addBakedCodeSource(Path path) {
+		bakedCodeSources.add(LoaderUtil.normalizeExistingPath(path));
+		addCodeSource(path);
+	}
+
 	@Override
 	public void setAllowedPrefixes(Path codeSource, String... prefixes) {
 		codeSource = LoaderUtil.normalizeExistingPath(codeSource);
@@ -229,23 +333,29 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 								if (LOG_CLASS_LOAD_ERRORS) Log.warn(LogCategory.KNOT, "can't find class %s", name);
 								throw e;
 							}
-						} else if (!isValidParentUrl(url, fileName)) { // available, but restricted
-							// The class would technically be available, but the game provider restricted it from being
-							// loaded by setting validParentUrls and not including "url". Typical causes are:
-							// - accessing classes too early (game libs shouldn't be used until Loader is ready)
-							// - using jars that are only transient (deobfuscation input or pass-through installers)
-							String msg = String.format("can't load class %s at %s as it hasn't been exposed to the game (yet? The system property "+SystemProperties.PATH_GROUPS+" may not be set correctly in-dev)",
-									name, getCodeSource(url, fileName));
-							if (LOG_CLASS_LOAD_ERRORS) Log.warn(LogCategory.KNOT, msg);
-							throw new ClassNotFoundException(msg);
-						} else { // load from system cl
-							if (LOG_CLASS_LOAD) Log.info(LogCategory.KNOT, "loading class %s using the parent class loader", name);
-							c = parentClassLoader.loadClass(name);
+						} else {
+							ClassResource resource = new ClassResource(fileName, url);
+
+							if (!isValidParentResource(resource)) { // available, but restricted
+								// The class would technically be available, but the game provider restricted it from being
+								// loaded by setting validParentUrls and not including "url". Typical causes are:
+								// - accessing classes too early (game libs shouldn't be used until Loader is ready)
+								// - using jars that are only transient (deobfuscation input or pass-through installers)
+								String msg = String.format("can't load class %s at %s as it hasn't been exposed to the game (yet? The system property "+SystemProperties.PATH_GROUPS+" may not be set correctly in-dev)",
+										name, resource.codeSource);
+								if (LOG_CLASS_LOAD_ERRORS) Log.warn(LogCategory.KNOT, msg);
+								throw new ClassNotFoundException(msg);
+							} else { // load from system cl
+								if (LOG_CLASS_LOAD) Log.info(LogCategory.KNOT, "loading class %s using the parent class loader", name);
+								c = parentClassLoader.loadClass(name);
+							}
 						}
 					} else if (LOG_CLASS_LOAD) {
 						Log.info(LogCategory.KNOT, "loaded class %s", name);
 					}
 				}
+			} else if (warmup != null) { // may have been defined by the warmup on behalf of the requester
+				warmup.recordRequest(name);
 			}
 
 			if (resolve) {
@@ -257,22 +367,20 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 	}
 
 	/**
-	 * Check if an url is loadable by the parent class loader.
+	 * Check if a resource is loadable by the parent class loader.
 	 *
 	 * <p>This handles explicit parent url whitelisting by {@link #validParentCodeSources} or shadowing by {@link #codeSources}
 	 */
-	private boolean isValidParentUrl(URL url, String fileName) {
-		if (url == null) return false;
+	private boolean isValidParentResource(ClassResource resource) {
 		if (DISABLE_ISOLATION) return true;
-		if (!hasRegularCodeSource(url)) return true;
+		if (resource.codeSource == null) return true;
 
-		Path codeSource = getCodeSource(url, fileName);
 		Set<Path> validParentCodeSources = this.validParentCodeSources;
 
 		if (validParentCodeSources != null) { // explicit whitelist (in addition to platform cl classes)
-			return validParentCodeSources.contains(codeSource) || PLATFORM_CLASS_LOADER.getResource(fileName) != null;
+			return validParentCodeSources.contains(resource.codeSource) || PLATFORM_CLASS_LOADER.getResource(resource.fileName) != null;
 		} else { // reject urls shadowed by this cl
-			return !codeSources.contains(codeSource);
+			return !codeSources.contains(resource.codeSource);
 		}
 	}
 
@@ -281,46 +389,55 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 			return null;
 		}
 
-		if (!allowedPrefixes.isEmpty() && !DISABLE_ISOLATION) { // check prefix restrictions (allows exposing libraries partially during startup)
-			String fileName = LoaderUtil.getClassFileName(name);
-			URL url = classLoader.getResource(fileName);
+		if (!allowFromParent && !parentSourcedClasses.isEmpty()) { // propagate loadIntoTarget behavior to its nested classes
+			int pos = name.length();
 
-			if (url != null && hasRegularCodeSource(url)) {
-				Path codeSource = getCodeSource(url, fileName);
-				String[] prefixes = allowedPrefixes.get(codeSource);
+			while ((pos = name.lastIndexOf('$', pos - 1)) > 0) {
+				if (parentSourcedClasses.contains(name.substring(0, pos))) {
+					allowFromParent = true;
+					break;
+				}
+			}
+		}
 
-				if (prefixes != null) {
-					assert prefixes.length > 0;
-					boolean found = false;
+		ClassLoadTimings timings = this.timings != null && this.timings.isRecording() ? this.timings : null;
+		long startTime = timings != null ? System.nanoTime() : 0;
 
-					for (String prefix : prefixes) {
-						if (name.startsWith(prefix)) {
-							found = true;
-							break;
-						}
-					}
+		// resolved once, the prefix check, the transformers and the class definition all share the result
+		ClassResource resource = findClassResource(name, allowFromParent);
 
-					if (!found) {
-						String msg = "class "+name+" is currently restricted from being loaded";
-						if (LOG_CLASS_LOAD_ERRORS) Log.warn(LogCategory.KNOT, msg);
-						throw new ClassNotFoundException(msg);
+		if (resource != null && resource.codeSource != null
+				&& !allowedPrefixes.isEmpty() && !DISABLE_ISOLATION) { // check prefix restrictions (allows exposing libraries partially during startup)
+			String[] prefixes = allowedPrefixes.get(resource.codeSource);
+
+			if (prefixes != null) {
+				assert prefixes.length > 0;
+				boolean found = false;
+
+				for (String prefix : prefixes) {
+					if (name.startsWith(prefix)) {
+						found = true;
+						break;
 					}
 				}
+
+				if (!found) {
+					String msg = "class "+name+" is currently restricted from being loaded";
+					if (LOG_CLASS_LOAD_ERRORS) Log.warn(LogCategory.KNOT, msg);
+					throw new ClassNotFoundException(msg);
+				}
 			}
 		}
 
-		if (!allowFromParent && !parentSourcedClasses.isEmpty()) { // propagate loadIntoTarget behavior to its nested classes
-			int pos = name.length();
+		ClassTiming timing = null;
 
-			while ((pos = name.lastIndexOf('$', pos - 1)) > 0) {
-				if (parentSourcedClasses.contains(name.substring(0, pos))) {
-					allowFromParent = true;
-					break;
-				}
-			}
+		if (timings != null) {
+			timing = timings.start(name, resource != null ? resource.codeSource : null);
+			timing.add(Phase.READ, System.nanoTime() - startTime); // resource lookup
 		}
 
-		byte[] input = getPostMixinClassByteArray(name, allowFromParent);
+		byte[] input = mixinAot != null ? mixinAot.take(name) : null;
+		if (input == null) input = getPostMixinClassByteArray(name, resource, timing);
 		if (input == null) return null;
 
 		// The class we're currently loading could have been loaded already during Mixin initialization triggered by `getPostMixinClassByteArray`.
@@ -335,7 +452,7 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 			parentSourcedClasses.add(name);
 		}
 
-		KnotClassDelegate.Metadata metadata = getMetadata(name);
+		KnotClassDelegate.Metadata metadata = getMetadata(resource);
 
 		int pkgDelimiterPos = name.lastIndexOf('.');
 
@@ -352,15 +469,23 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 			}
 		}
 
-		return classLoader.defineClassFwd(name, input, 0, input.length, metadata.codeSource);
+		Class<?> ret = classLoader.defineClassFwd(name, input, 0, input.length, metadata.codeSource);
+
+		if (timing != null) timings.finish(timing);
+
+		MixinServiceKnot.invalidateClassBytes(name);
+
+		if (warmup != null && !allowFromParent) { // the warmup loads through loadClass, which won't use the parent for these
+			warmup.recordClass(name);
+		}
+
+		return ret;
 	}
 
-	private Metadata getMetadata(String name) {
-		String fileName = LoaderUtil.getClassFileName(name);
-		URL url = classLoader.getResource(fileName);
-		if (url == null || !hasRegularCodeSource(url)) return Metadata.EMPTY;
+	private Metadata getMetadata(ClassResource resource) {
+		if (resource == null || resource.codeSource == null) return Metadata.EMPTY;
 
-		return getMetadata(getCodeSource(url, fileName));
+		return getMetadata(resource.codeSource);
 	}
 
 	private Metadata getMetadata(Path codeSource) {
@@ -411,58 +536,166 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 		});
 	}
 
-	private byte[] getPostMixinClassByteArray(String name, boolean allowFromParent) {
-		byte[] transformedClassArray = getPreMixinClassByteArray(name, allowFromParent);
+	private byte[] getPostMixinClassByteArray(String name, ClassResource resource, ClassTiming timing) {
+		KnotClassCache classCache = this.classCache;
+
+		if (classCache != null && canTransformClass(name)) {
+			return getCachedPostMixinClassByteArray(classCache, name, resource, timing);
+		}
+
+		byte[] transformedClassArray = getPreMixinClassByteArray(name, resource, timing);
 
 		if (!transformInitialized || !canTransformClass(name)) {
 			return transformedClassArray;
 		}
 
+		return applyMixins(name, transformedClassArray, timing);
+	}
+
+	/**
+	 * Equivalent of {@link #getPostMixinClassByteArray} that serves the non-mixin transformers' output from the class
+	 * cache, Mixin still runs on every class unless the Mixin AOT mode stored its output.
+	 */
+	private byte[] getCachedPostMixinClassByteArray(KnotClassCache classCache, String name, ClassResource resource, ClassTiming timing) {
+		byte[] input = applyGameTransformer(name, timing);
+
+		if (input != null) { // patched by the game provider, not worth caching
+			return applyMixins(name, applyFabricTransformer(name, input, null, timing), timing);
+		}
+
+		input = getRawClassByteArray(name, resource, timing);
+
+		if (input == null) { // Mixin may still generate the class
+			return applyMixins(name, null, timing);
+		}
+
+		long startTime = timing != null ? System.nanoTime() : 0;
+		byte[] rawHash = KnotClassCache.hash(input);
+		KnotClassCache.Entry entry = classCache.get(rawHash);
+		if (timing != null) timing.add(Phase.FABRIC_TRANSFORM, System.nanoTime() - startTime); // replaces the transformer on hits
+
+		if (entry != null) {
+			if (entry.postMixinBytes != null && mixinAot != null) return entry.postMixinBytes;
+
+			return applyMixins(name, entry.preMixinBytes, timing);
+		}
+
+		byte[] preMixinClassArray = applyFabricTransformer(name, input, resource, timing);
+		byte[] ret = applyMixins(name, preMixinClassArray, timing);
+		byte[] postMixinClassArray = null;
+
+		if (ret != preMixinClassArray && mixinAot != null
+				&& KnotMixinAot.isSelfContained(preMixinClassArray, ret, cls -> findClassResource(cls, true) != null)) {
+			postMixinClassArray = ret;
+		}
+
+		classCache.put(rawHash, preMixinClassArray, postMixinClassArray);
+
+		return ret;
+	}
+
+	/**
+	 * Produce the final bytes for a local class without defining it, used by the Mixin AOT mode.
+	 */
+	private byte[] transformAheadOfTime(String name) {
+		if (!canTransformClass(name)) return null;
+
+		ClassResource resource = findClassResource(name, false);
+		if (resource == null) return null;
+
+		return getPostMixinClassByteArray(name, resource, null);
+	}
+
+	private byte[] applyGameTransformer(String name, ClassTiming timing) {
+		long startTime = timing != null ? System.nanoTime() : 0;
+		byte[] ret = provider.getEntrypointTransformer().transform(name);
+		if (timing != null) timing.add(Phase.GAME_TRANSFORM, System.nanoTime() - startTime);
+
+		return ret;
+	}
+
+	/**
+	 * @param resource the resource input was read from, null if it has been modified since
+	 */
+	private byte[] applyFabricTransformer(String name, byte[] input, ClassResource resource, ClassTiming timing) {
+		if (resource != null && resource.codeSource != null
+				&& bakedCodeSources.contains(resource.codeSource)
+				&& FabricTransformer.isMinecraftClass(name)) {
+			return input; // already transformed ahead of time
+		}
+
+		long startTime = timing != null ? System.nanoTime() : 0;
+		EnvironmentStrippingIndex index = environmentStrippingIndex;
+		boolean mayNeedStripping = resource == null || resource.codeSource == null || index == null
+				|| index.mayNeedStripping(resource.codeSource, name);
+		byte[] ret = FabricTransformer.transform(isDevelopment, envType, name, input, mayNeedStripping);
+		if (timing != null) timing.add(Phase.FABRIC_TRANSFORM, System.nanoTime() - startTime);
+
+		return ret;
+	}
+
+	private byte[] applyMixins(String name, byte[] input, ClassTiming timing) {
+		KnotMixinAot mixinAot = this.mixinAot;
+		if (mixinAot != null) mixinAot.lockMixin(name); // decides between the AOT pool and the class loader for targets
+
 		try {
-			return getMixinTransformer().transformClassBytes(name, name, transformedClassArray);
-		} catch (Throwable t) {
-			String msg = String.format("Mixin transformation of %s failed", name);
-			if (LOG_TRANSFORM_ERRORS) Log.warn(LogCategory.KNOT, msg, t);
+			KnotMixinAudit mixinAudit = this.mixinAudit;
+			long startTime = timing != null || mixinAudit != null ? System.nanoTime() : 0;
+			KnotMixinAudit.Target auditTarget = mixinAudit != null ? mixinAudit.begin(name) : null;
+			byte[] ret = null;
+
+			try {
+				ret = getMixinTransformer().transformClassBytes(name, name, input);
+			} catch (Throwable t) {
+				String msg = String.format("Mixin transformation of %s failed", name);
+				if (LOG_TRANSFORM_ERRORS) Log.warn(LogCategory.KNOT, msg, t);
+
+				throw new RuntimeException(msg, t);
+			} finally {
+				if (auditTarget != null) mixinAudit.end(auditTarget, System.nanoTime() - startTime, input, ret);
+			}
 
-			throw new RuntimeException(msg, t);
+			if (timing != null) timing.add(Phase.MIXIN, System.nanoTime() - startTime);
+
+			return ret;
+		} finally {
+			if (mixinAot != null) mixinAot.unlockMixin();
 		}
 	}
 
 	@Override
 	public byte[] getPreMixinClassBytes(String name) {
-		return getPreMixinClassByteArray(name, true);
+		return getPreMixinClassByteArray(name, findClassResource(name, true), null);
 	}
 
 	/**
 	 * Runs all the class transformers except mixin.
 	 */
-	private byte[] getPreMixinClassByteArray(String name, boolean allowFromParent) {
+	private byte[] getPreMixinClassByteArray(String name, ClassResource resource, ClassTiming timing) {
 		// some of the transformers rely on dot notation
 		name = name.replace('/', '.');
 
 		if (!transformInitialized || !canTransformClass(name)) {
-			try {
-				return getRawClassByteArray(name, allowFromParent);
-			} catch (IOException e) {
-				throw new RuntimeException("Failed to load class file for '" + name + "'!", e);
-			}
+			return getRawClassByteArray(name, resource, timing);
 		}
 
-		byte[] input = provider.getEntrypointTransformer().transform(name);
+		byte[] input = applyGameTransformer(name, timing);
 
-		if (input == null) {
-			try {
-				input = getRawClassByteArray(name, allowFromParent);
-			} catch (IOException e) {
-				throw new RuntimeException("Failed to load class file for '" + name + "'!", e);
-			}
+		if (input != null) { // patched by the game provider
+			return applyFabricTransformer(name, input, null, timing);
 		}
 
-		if (input != null) {
-			return FabricTransformer.transform(isDevelopment, envType, name, input);
+		input = getRawClassByteArray(name, resource, timing);
+		if (input == null) return null;
+
+		KnotClassCache classCache = this.classCache;
+
+		if (classCache != null) {
+			KnotClassCache.Entry entry = classCache.get(KnotClassCache.hash(input));
+			if (entry != null) return entry.preMixinBytes;
 		}
 
-		return null;
+		return applyFabricTransformer(name, input, resource, timing);
 	}
 
 	private static boolean canTransformClass(String name) {
@@ -473,37 +706,48 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 
 	@Override
 	public byte[] getRawClassBytes(String name) throws IOException {
-		return getRawClassByteArray(name, true);
+		ClassResource resource = findClassResource(name, true);
+
+		return resource != null ? resource.read() : null;
 	}
 
-	private byte[] getRawClassByteArray(String name, boolean allowFromParent) throws IOException {
-		name = LoaderUtil.getClassFileName(name);
-		URL url = classLoader.findResourceFwd(name);
+	private static byte[] getRawClassByteArray(String name, ClassResource resource, ClassTiming timing) {
+		if (resource == null) return null;
 
-		if (url == null) {
-			if (!allowFromParent) return null;
+		long startTime = timing != null ? System.nanoTime() : 0;
+		byte[] ret;
 
-			url = parentClassLoader.getResource(name);
+		try {
+			ret = resource.read();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to load class file for '" + name + "'!", e);
+		}
 
-			if (!isValidParentUrl(url, name)) {
-				if (LOG_CLASS_LOAD) Log.info(LogCategory.KNOT, "refusing to load class %s at %s from parent class loader", name, getCodeSource(url, name));
+		if (timing != null) timing.add(Phase.READ, System.nanoTime() - startTime);
 
-				return null;
-			}
-		}
+		return ret;
+	}
 
-		try (InputStream inputStream = url.openStream()) {
-			int a = inputStream.available();
-			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(a < 32 ? 32768 : a);
-			byte[] buffer = new byte[8192];
-			int len;
+	/**
+	 * Locate the class file for a class, locally or through the parent class loader if allowed and not restricted.
+	 */
+	private ClassResource findClassResource(String name, boolean allowFromParent) {
+		String fileName = LoaderUtil.getClassFileName(name);
+		ClassResource ret = classLoader.findClassResourceFwd(fileName);
+		if (ret != null || !allowFromParent) return ret;
 
-			while ((len = inputStream.read(buffer)) > 0) {
-				outputStream.write(buffer, 0, len);
-			}
+		URL url = parentClassLoader.getResource(fileName);
+		if (url == null) return null;
+
+		ret = new ClassResource(fileName, url);
 
-			return outputStream.toByteArray();
+		if (!isValidParentResource(ret)) {
+			if (LOG_CLASS_LOAD) Log.info(LogCategory.KNOT, "refusing to load class %s at %s from parent class loader", fileName, ret.codeSource);
+
+			return null;
 		}
+
+		return ret;
 	}
 
 	private static boolean hasRegularCodeSource(URL url) {
@@ -528,9 +772,60 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 		}
 	}
 
+	/**
+	 * Class file resolved to its location, carried through a class load to avoid repeated lookups and url parsing.
+	 */
+	static final class ClassResource {
+		final String fileName;
+		final Path codeSource; // normalized, null if not a file or jar
+		private final CodeSourceIndex.Source source; // null if not served by the code source index
+		private URL url;
+
+		ClassResource(String fileName, CodeSourceIndex.Source source) {
+			this.fileName = fileName;
+			this.codeSource = source.path;
+			this.source = source;
+		}
+
+		ClassResource(String fileName, URL url) {
+			this.fileName = fileName;
+			this.codeSource = hasRegularCodeSource(url) ? getCodeSource(url, fileName) : null;
+			this.source = null;
+			this.url = url;
+		}
+
+		URL getUrl() {
+			if (url == null) url = source.getUrl(fileName);
+
+			return url;
+		}
+
+		byte[] read() throws IOException {
+			if (source != null) { // direct access, avoids the url connection and intermediate buffers
+				byte[] ret = source.read(fileName);
+				if (ret == null) throw new FileNotFoundException(fileName+" in "+codeSource);
+
+				return ret;
+			}
+
+			try (InputStream inputStream = getUrl().openStream()) {
+				int a = inputStream.available();
+				ByteArrayOutputStream outputStream = new ByteArrayOutputStream(a < 32 ? 32768 : a);
+				byte[] buffer = new byte[8192];
+				int len;
+
+				while ((len = inputStream.read(buffer)) > 0) {
+					outputStream.write(buffer, 0, len);
+				}
+
+				return outputStream.toByteArray();
+			}
+		}
+	}
+
 	interface ClassLoaderAccess {
-		void addUrlFwd(URL url);
-		URL findResourceFwd(String name);
+		void addCodeSourceFwd(Path path) throws MalformedURLException;
+		ClassResource findClassResourceFwd(String fileName);
 
 		Package getPackageFwd(String name);
 		Package definePackageFwd(String name, String specTitle, String specVersion, String specVendor, String implTitle, String implVersion, String implVendor, URL sealBase) throws IllegalArgumentException;
@@ -18,8 +18,10 @@ package net.fabricmc.loader.impl.launch.knot;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Path;
 import java.security.CodeSource;
 import java.util.Enumeration;
 import java.util.Objects;
@@ -27,7 +29,9 @@ import java.util.Objects;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.impl.game.GameProvider;
 import net.fabricmc.loader.impl.launch.knot.KnotClassDelegate.ClassLoaderAccess;
+import net.fabricmc.loader.impl.launch.knot.KnotClassDelegate.ClassResource;
 import net.fabricmc.loader.impl.mrj.AbstractSecureClassLoader;
+import net.fabricmc.loader.impl.util.UrlUtil;
 
 // class name referenced by string constant in net.fabricmc.loader.impl.util.LoaderUtil.verifyNotInTargetCl
 final class KnotClassLoader extends AbstractSecureClassLoader implements ClassLoaderAccess {
@@ -46,7 +50,8 @@ final class KnotClassLoader extends AbstractSecureClassLoader implements ClassLo
 		}
 	}
 
-	private final DynamicURLClassLoader urlLoader;
+	private final DynamicURLClassLoader urlLoader; // only kept up to date for introspection, lookups use the index
+	private final CodeSourceIndex index = new CodeSourceIndex();
 	private final ClassLoader originalLoader;
 	private final KnotClassDelegate<KnotClassLoader> delegate;
 
@@ -65,7 +70,7 @@ final class KnotClassLoader extends AbstractSecureClassLoader implements ClassLo
 	public URL getResource(String name) {
 		Objects.requireNonNull(name);
 
-		URL url = urlLoader.getResource(name);
+		URL url = index.findResource(name);
 
 		if (url == null) {
 			url = originalLoader.getResource(name);
@@ -78,34 +83,38 @@ final class KnotClassLoader extends AbstractSecureClassLoader implements ClassLo
 	public URL findResource(String name) {
 		Objects.requireNonNull(name);
 
-		return urlLoader.findResource(name);
+		return index.findResource(name);
 	}
 
 	@Override
 	public Enumeration<URL> findResources(String name) throws IOException {
 		Objects.requireNonNull(name);
 
-		return urlLoader.findResources(name);
+		return index.findResources(name);
 	}
 
 	@Override
 	public InputStream getResourceAsStream(String name) {
 		Objects.requireNonNull(name);
 
-		InputStream inputStream = urlLoader.getResourceAsStream(name);
+		URL url = index.findResource(name);
 
-		if (inputStream == null) {
-			inputStream = originalLoader.getResourceAsStream(name);
+		if (url == null) {
+			return originalLoader.getResourceAsStream(name);
 		}
 
-		return inputStream;
+		try {
+			return url.openStream();
+		} catch (IOException e) {
+			return null;
+		}
 	}
 
 	@Override
 	public Enumeration<URL> getResources(String name) throws IOException {
 		Objects.requireNonNull(name);
 
-		final Enumeration<URL> resources = urlLoader.getResources(name);
+		final Enumeration<URL> resources = index.findResources(name);
 
 		if (!resources.hasMoreElements()) {
 			return originalLoader.getResources(name);
@@ -125,13 +134,16 @@ final class KnotClassLoader extends AbstractSecureClassLoader implements ClassLo
 	}
 
 	@Override
-	public void addUrlFwd(URL url) {
-		urlLoader.addURL(url);
+	public void addCodeSourceFwd(Path path) throws MalformedURLException {
+		urlLoader.addURL(UrlUtil.asUrl(path));
+		index.add(path);
 	}
 
 	@Override
-	public URL findResourceFwd(String name) {
-		return urlLoader.findResource(name);
+	public ClassResource findClassResourceFwd(String fileName) {
+		CodeSourceIndex.Source source = index.findSource(fileName);
+
+		return source != null ? new ClassResource(fileName, source) : null;
 	}
 
 	@Override
@@ -23,6 +23,7 @@ import java.util.jar.Manifest;
 
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.impl.game.GameProvider;
+import net.fabricmc.loader.impl.launch.ClassLoadTimings;
 
 interface KnotClassLoaderInterface {
 	@SuppressWarnings("resource")
@@ -35,10 +36,23 @@ interface KnotClassLoaderInterface {
 	}
 
 	void initializeTransformers();
+	void startWarmup(); // class warmup and Mixin AOT, both opt-in
+	void finishStartup();
+
+	/**
+	 * @return the class load timings or null if not enabled
+	 */
+	ClassLoadTimings getClassLoadTimings();
 
 	ClassLoader getClassLoader();
 
 	void addCodeSource(Path path);
+
+	/**
+	 * Add a code source whose Minecraft classes already had {@link net.fabricmc.loader.impl.transformer.FabricTransformer}
+	 * applied, see {@link net.fabricmc.loader.impl.transformer.GameJarBaker}.
+	 */
+	void addBakedCodeSource(Path path);
 	void setAllowedPrefixes(Path codeSource, String... prefixes);
 	void setValidParentClassPath(Collection<Path> codeSources);
 
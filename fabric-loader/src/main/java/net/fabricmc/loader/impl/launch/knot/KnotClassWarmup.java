@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.launch.knot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Opt-in class warmup, loading the classes recorded during the previous startup on a thread pool ahead of the game.
+ *
+ * <p>Classes are loaded without initializing them, the game's behavior only changes in which thread reads, transforms
+ * and defines them. Any failure is ignored, the game's own load will run into it again and handle it as usual.
+ *
+ * <p>The list gets recorded anew on every run until the end of startup and replaces the previous one, keeping it up
+ * to date with mod changes. Classes defined by the warmup itself only get recorded once the game requests them, so
+ * entries the game no longer needs drop out.
+ */
+final class KnotClassWarmup {
+	private final Path file;
+	private final Set<String> recordedClasses = Collections.newSetFromMap(new ConcurrentHashMap<>());
+	private final Queue<String> recordedOrder = new ConcurrentLinkedQueue<>();
+	private final Set<String> warmedClasses = Collections.newSetFromMap(new ConcurrentHashMap<>()); // defined by the warmup, not requested yet
+	private final AtomicInteger loaded = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private volatile boolean recording = true;
+	private volatile boolean cancelled;
+	private ForkJoinPool pool;
+	private int total;
+
+	KnotClassWarmup(Path listDir, EnvType envType) {
+		this.file = listDir.resolve(envType.name().toLowerCase(Locale.ENGLISH).concat(".txt"));
+	}
+
+	/**
+	 * Record a class defined by Knot for the next run's warmup.
+	 */
+	void recordClass(String name) {
+		if (!recording) return;
+
+		if (Thread.currentThread() instanceof WorkerThread) {
+			warmedClasses.add(name);
+		} else if (recordedClasses.add(name)) {
+			recordedOrder.add(name);
+		}
+	}
+
+	/**
+	 * Record a request for an already defined class, which may have been defined by the warmup.
+	 */
+	void recordRequest(String name) {
+		if (recording
+				&& !(Thread.currentThread() instanceof WorkerThread)
+				&& warmedClasses.remove(name)
+				&& recordedClasses.add(name)) {
+			recordedOrder.add(name);
+		}
+	}
+
+	/**
+	 * Start loading the previously recorded classes in the background.
+	 */
+	void start(ClassLoader classLoader) {
+		List<String> classes;
+
+		try {
+			classes = Files.readAllLines(file, StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			Log.debug(LogCategory.KNOT, "No class list at %s, skipping warmup", file);
+			return;
+		} catch (IOException e) {
+			Log.warn(LogCategory.KNOT, "Error reading class list %s, skipping warmup", file, e);
+			return;
+		}
+
+		if (classes.isEmpty()) return;
+
+		int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // keep a core for the main thread
+		pool = new ForkJoinPool(parallelism, p -> {
+			ForkJoinWorkerThread ret = new WorkerThread(p);
+			ret.setName("Knot Warmup " + ret.getPoolIndex());
+			ret.setContextClassLoader(classLoader);
+
+			return ret;
+		}, null, false);
+
+		for (String name : classes) {
+			if (name.isEmpty()) continue;
+
+			total++;
+
+			pool.execute(() -> {
+				if (cancelled) return;
+
+				try {
+					Class.forName(name, false, classLoader);
+					loaded.incrementAndGet();
+				} catch (Throwable t) { // stale entry or a class that can't be loaded (yet), not our concern
+					failed.incrementAndGet();
+				}
+			});
+		}
+
+		Log.debug(LogCategory.KNOT, "Warming up %d classes with %d threads", total, parallelism);
+	}
+
+	/**
+	 * Stop the warmup and recording, then store the recorded class list.
+	 */
+	void finish() {
+		recording = false;
+		warmedClasses.clear();
+
+		if (pool != null) {
+			// let running loads complete, interrupting them could close code source channels or fail class cache writes
+			cancelled = true;
+			pool.shutdown();
+			Log.debug(LogCategory.KNOT, "Class warmup loaded %d of %d classes (%d failed)", loaded.get(), total, failed.get());
+			pool = null;
+		}
+
+		List<String> classes = new ArrayList<>(recordedOrder);
+		if (classes.isEmpty()) return;
+
+		Path tmpFile = null;
+
+		try {
+			Files.createDirectories(file.getParent());
+			tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+			Files.write(tmpFile, classes, StandardCharsets.UTF_8);
+
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			tmpFile = null;
+			Log.debug(LogCategory.KNOT, "Recorded %d classes for warmup in %s", classes.size(), file);
+		} catch (IOException e) {
+			Log.warn(LogCategory.KNOT, "Error writing class list %s", file, e);
+		} finally {
+			if (tmpFile != null) {
+				try {
+					Files.deleteIfExists(tmpFile);
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	private static final class WorkerThread extends ForkJoinWorkerThread {
+		WorkerThread(ForkJoinPool pool) {
+			super(pool);
+		}
+	}
+}
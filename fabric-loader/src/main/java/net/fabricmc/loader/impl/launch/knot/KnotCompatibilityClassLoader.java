@@ -16,13 +16,17 @@
 
 package net.fabricmc.loader.impl.launch.knot;
 
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Path;
 import java.security.CodeSource;
 
 import net.fabricmc.api.EnvType;
 import net.fabricmc.loader.impl.game.GameProvider;
 import net.fabricmc.loader.impl.launch.knot.KnotClassDelegate.ClassLoaderAccess;
+import net.fabricmc.loader.impl.launch.knot.KnotClassDelegate.ClassResource;
+import net.fabricmc.loader.impl.util.UrlUtil;
 
 class KnotCompatibilityClassLoader extends URLClassLoader implements ClassLoaderAccess {
 	private final KnotClassDelegate<KnotCompatibilityClassLoader> delegate;
@@ -47,13 +51,15 @@ class KnotCompatibilityClassLoader extends URLClassLoader implements ClassLoader
 	}
 
 	@Override
-	public void addUrlFwd(URL url) {
-		super.addURL(url);
+	public void addCodeSourceFwd(Path path) throws MalformedURLException {
+		super.addURL(UrlUtil.asUrl(path));
 	}
 
 	@Override
-	public URL findResourceFwd(String name) {
-		return findResource(name);
+	public ClassResource findClassResourceFwd(String fileName) {
+		URL url = findResource(fileName);
+
+		return url != null ? new ClassResource(fileName, url) : null;
 	}
 
 	@Override
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.launch.knot;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.objectweb.asm.ClassReader;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.Config;
+
+import net.fabricmc.loader.impl.util.ExceptionUtil;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Opt-in ahead of time Mixin application, transforming all mixin target classes on a thread pool instead of when the
+ * game first loads them.
+ *
+ * <p>The output is handed to the class loader once it loads the respective class, every target passes through Mixin
+ * exactly once. A target is either transformed by a pool thread or taken over by the class loader, the decision is
+ * made while holding the Mixin lock all Mixin applications go through. A class load nested in a Mixin application
+ * thus never waits for a pool thread that may be queued on that lock, it takes over targets the pool hasn't started
+ * applying Mixin to yet. Mixin serializes the application itself, the pool mostly parallelizes reading and the other
+ * transformers while keeping Mixin busy.
+ *
+ * <p>The targets are only known once Mixin selected its configs, which it does lazily on the first class it
+ * transforms. The pool is thus started by the first Mixin application after {@link #start} has been called, which
+ * also picks up configs added until then.
+ *
+ * <p>With the class cache enabled, Mixin's output is additionally stored in there so later runs can define the classes
+ * without invoking Mixin at all.
+ */
+final class KnotMixinAot {
+	private static final int CONSTANT_CLASS = 7;
+
+	private final ReentrantLock mixinLock = new ReentrantLock();
+	private final ThreadLocal<Target> currentTarget = new ThreadLocal<>();
+	private final Map<String, Target> targets = new ConcurrentHashMap<>();
+	private final AtomicInteger transformed = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicInteger used = new AtomicInteger();
+	private final AtomicInteger takenOver = new AtomicInteger();
+	private volatile boolean startRequested;
+	private volatile boolean finished;
+	private ClassLoader classLoader;
+	private Function<String, byte[]> transformer;
+	private Predicate<String> isLoaded;
+	private ForkJoinPool pool;
+
+	/**
+	 * Request transforming all mixin targets in the background, starting with the next Mixin application.
+	 *
+	 * @param transformer produces the final class bytes for a class name, null if the class isn't available
+	 * @param isLoaded tests whether a class has already been defined, without acquiring its class loading lock
+	 */
+	synchronized void start(ClassLoader classLoader, Function<String, byte[]> transformer, Predicate<String> isLoaded) {
+		if (finished) return;
+
+		this.classLoader = classLoader;
+		this.transformer = transformer;
+		this.isLoaded = isLoaded;
+		startRequested = true;
+	}
+
+	private synchronized void startPool() {
+		if (!startRequested) return;
+
+		startRequested = false;
+
+		for (Config config : Mixins.getConfigs()) {
+			for (String name : config.getConfig().getTargets()) {
+				name = name.replace('/', '.');
+				if (!isLoaded.test(name)) targets.putIfAbsent(name, new Target(name));
+			}
+		}
+
+		if (targets.isEmpty()) return;
+
+		int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // keep a core for the main thread
+		pool = new ForkJoinPool(parallelism, p -> {
+			ForkJoinWorkerThread ret = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+			ret.setName("Knot Mixin AOT " + ret.getPoolIndex());
+			ret.setContextClassLoader(classLoader);
+
+			return ret;
+		}, null, false);
+
+		for (Target target : targets.values()) {
+			pool.execute(() -> process(target));
+		}
+
+		Log.debug(LogCategory.KNOT, "Applying mixins ahead of time to %d classes with %d threads", targets.size(), parallelism);
+	}
+
+	private void process(Target target) {
+		if (finished || !target.state.compareAndSet(Target.UNCLAIMED, Target.PREPARING)) return; // startup is over or already being loaded
+
+		currentTarget.set(target);
+
+		try {
+			byte[] ret = transformer.apply(target.name);
+			target.result.complete(ret);
+
+			if (target.state.compareAndSet(Target.PREPARING, Target.DONE) || target.state.compareAndSet(Target.IN_MIXIN, Target.DONE)) {
+				transformed.incrementAndGet();
+			}
+		} catch (TakenOverException e) {
+			// the class loader transforms the class itself
+		} catch (Throwable t) {
+			if (!target.state.compareAndSet(Target.PREPARING, Target.RELEASED)) { // failed in Mixin, the class loader reports it
+				target.result.completeExceptionally(t);
+				target.state.set(Target.DONE);
+				failed.incrementAndGet();
+			}
+		} finally {
+			currentTarget.remove();
+		}
+	}
+
+	/**
+	 * Acquire the Mixin lock before applying Mixin to a class, every Mixin application has to be wrapped in
+	 * lockMixin/{@link #unlockMixin}.
+	 *
+	 * @throws TakenOverException if the calling pool thread's target has been taken over by the class loader
+	 */
+	void lockMixin(String name) {
+		mixinLock.lock();
+
+		Target target = currentTarget.get();
+
+		if (target != null && target.name.equals(name)
+				&& !target.state.compareAndSet(Target.PREPARING, Target.IN_MIXIN)) {
+			mixinLock.unlock();
+			throw TakenOverException.INSTANCE;
+		}
+	}
+
+	void unlockMixin() {
+		mixinLock.unlock();
+
+		if (startRequested) startPool();
+	}
+
+	/**
+	 * Obtain the ahead of time transformed class bytes for a class that is about to be defined.
+	 *
+	 * <p>Targets the pool hasn't applied Mixin to yet are taken over by the caller, which then has to transform them
+	 * itself. Otherwise this waits for the pool thread, which only needs the Mixin lock and whatever Mixin itself
+	 * requires, just like transforming the class on the calling thread would.
+	 *
+	 * @return the final class bytes or null if the caller has to transform the class
+	 */
+	byte[] take(String name) {
+		Target target = targets.remove(name);
+		if (target == null) return null;
+
+		int state;
+
+		while ((state = target.state.get()) == Target.UNCLAIMED || state == Target.PREPARING) {
+			if (target.state.compareAndSet(state, Target.RELEASED)) {
+				if (state == Target.PREPARING) takenOver.incrementAndGet();
+				return null;
+			}
+		}
+
+		if (state == Target.RELEASED) return null; // failed before reaching Mixin
+
+		boolean interrupted = false;
+
+		try {
+			for (;;) {
+				try {
+					byte[] ret = target.result.get();
+					if (ret != null) used.incrementAndGet();
+
+					return ret;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) { // rethrow what transforming the class on this thread would have thrown
+					if (e.getCause() instanceof Error) throw (Error) e.getCause();
+					throw ExceptionUtil.wrap(e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) Thread.currentThread().interrupt();
+		}
+	}
+
+	void finish() {
+		finished = true;
+
+		synchronized (this) {
+			startRequested = false;
+		}
+
+		if (pool == null) return;
+
+		// no interruption, it could close channels of the code sources the workers are reading from
+		pool.shutdown();
+		// targets already in or past Mixin stay, their class may still be loaded and must not be transformed again
+		targets.values().removeIf(Target::release);
+
+		Log.debug(LogCategory.KNOT, "Mixin AOT transformed %d classes (%d failed), %d used during startup, %d taken over",
+				transformed.get(), failed.get(), used.get(), takenOver.get());
+		pool = null;
+	}
+
+	/**
+	 * Determine whether Mixin's output for a class references only classes that exist independently of Mixin.
+	 *
+	 * <p>Classes Mixin generates while applying (e.g. for {@code @ModifyArgs} or inner classes of mixins) get fresh
+	 * names on every run and are only known to Mixin after it transformed the referencing class, so such output can't
+	 * be reused by a later run.
+	 */
+	static boolean isSelfContained(byte[] preMixinBytes, byte[] postMixinBytes, Predicate<String> classExists) {
+		Set<String> known = getClassReferences(new ClassReader(preMixinBytes));
+		ClassReader reader = new ClassReader(postMixinBytes);
+
+		for (String name : getClassReferences(reader)) {
+			if (!known.contains(name)
+					&& !name.equals(reader.getClassName())
+					&& !classExists.test(name)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static Set<String> getClassReferences(ClassReader reader) {
+		Set<String> ret = new LinkedHashSet<>();
+		char[] buffer = new char[reader.getMaxStringLength()];
+
+		for (int i = 1, max = reader.getItemCount(); i < max; i++) {
+			int offset = reader.getItem(i); // points after the tag, 0 for the unused slot after long/double
+			if (offset == 0 || reader.readByte(offset - 1) != CONSTANT_CLASS) continue;
+
+			String name = reader.readUTF8(offset, buffer);
+
+			if (name.startsWith("[")) { // array, only object element types are of interest
+				int start = name.lastIndexOf('[') + 1;
+				if (name.charAt(start) != 'L') continue;
+
+				name = name.substring(start + 1, name.length() - 1);
+			}
+
+			ret.add(name);
+		}
+
+		return ret;
+	}
+
+	private static final class Target {
+		static final int UNCLAIMED = 0;
+		static final int PREPARING = 1; // claimed by a pool thread, Mixin not applied yet
+		static final int IN_MIXIN = 2;
+		static final int DONE = 3;
+		static final int RELEASED = 4; // the class loader transforms it
+
+		final String name;
+		final AtomicInteger state = new AtomicInteger(UNCLAIMED);
+		final CompletableFuture<byte[]> result = new CompletableFuture<>();
+
+		Target(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @return true if the target has been handed to the class loader before the pool reached Mixin
+		 */
+		boolean release() {
+			int state;
+
+			while ((state = this.state.get()) == UNCLAIMED || state == PREPARING) {
+				if (this.state.compareAndSet(state, RELEASED)) return true;
+			}
+
+			return state == RELEASED;
+		}
+	}
+
+	/**
+	 * Aborts a pool thread's transformation before it enters Mixin for a target the class loader took over.
+	 */
+	@SuppressWarnings("serial")
+	static final class TakenOverException extends RuntimeException {
+		static final TakenOverException INSTANCE = new TakenOverException();
+
+		private TakenOverException() {
+			super(null, null, false, false);
+		}
+	}
+}
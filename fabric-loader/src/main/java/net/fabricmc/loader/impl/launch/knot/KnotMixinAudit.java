@@ -0,0 +1,337 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.launch.knot;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.spongepowered.asm.mixin.Mixins;
+import org.spongepowered.asm.mixin.transformer.Config;
+import org.spongepowered.asm.service.IMixinAuditTrail;
+
+import net.fabricmc.loader.impl.FabricLoaderImpl;
+import net.fabricmc.loader.impl.launch.FabricLauncherBase;
+import net.fabricmc.loader.impl.util.JsonUtil;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Mixin audit trail recording the cost of every Mixin transformation, attributed to the applied mixins and their configs.
+ *
+ * <p>Mixin applies all mixins for a target in one pass, so a target's time and size change get split evenly across
+ * the mixins applied to it. Injectors are counted as the injector methods declared by each applied mixin.
+ */
+final class KnotMixinAudit implements IMixinAuditTrail {
+	private static final int LOGGED_CONFIG_COUNT = 5;
+	private static final Set<String> INJECTOR_DESCRIPTORS = new HashSet<>(Arrays.asList(
+			"Lorg/spongepowered/asm/mixin/injection/Inject;",
+			"Lorg/spongepowered/asm/mixin/injection/Redirect;",
+			"Lorg/spongepowered/asm/mixin/injection/ModifyArg;",
+			"Lorg/spongepowered/asm/mixin/injection/ModifyArgs;",
+			"Lorg/spongepowered/asm/mixin/injection/ModifyVariable;",
+			"Lorg/spongepowered/asm/mixin/injection/ModifyConstant;"));
+	private static final String MIXIN_EXTRAS_INJECTOR_PREFIX = "Lcom/llamalad7/mixinextras/injector/";
+
+	private final ThreadLocal<Target> currentTarget = new ThreadLocal<>();
+	private final Queue<Target> targets = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger untargetedCount = new AtomicInteger();
+	private final AtomicLong untargetedNanos = new AtomicLong();
+	private final Map<String, AtomicInteger> generated = new ConcurrentHashMap<>();
+
+	/**
+	 * Start recording a Mixin transformation on the current thread.
+	 */
+	Target begin(String name) {
+		Target ret = new Target(name, currentTarget.get());
+		currentTarget.set(ret);
+
+		return ret;
+	}
+
+	/**
+	 * Finish recording a Mixin transformation started on the current thread.
+	 *
+	 * @param input the class bytes passed to Mixin, null for generated classes
+	 */
+	void end(Target target, long nanos, byte[] input, byte[] output) {
+		currentTarget.set(target.parent);
+		if (target.parent != null) target.parent.nestedNanos += nanos; // nested loads, e.g. from config plugins
+
+		target.nanos = nanos - target.nestedNanos;
+
+		if (target.mixins.isEmpty()) {
+			untargetedCount.incrementAndGet();
+			untargetedNanos.addAndGet(target.nanos);
+		} else {
+			target.sizeDelta = (output != null ? output.length : 0) - (input != null ? input.length : 0);
+			targets.add(target);
+		}
+	}
+
+	@Override
+	public void onApply(String className, String mixinName) {
+		Target target = currentTarget.get();
+		if (target != null) target.mixins.add(mixinName);
+	}
+
+	@Override
+	public void onPostProcess(String className) { }
+
+	@Override
+	public void onGenerate(String className, String generatorName) {
+		generated.computeIfAbsent(generatorName, ignore -> new AtomicInteger()).incrementAndGet();
+	}
+
+	/**
+	 * Log a summary and write a JSON report with the config and target costs, times in ms.
+	 */
+	void writeJson(Writer writer) throws IOException {
+		List<Target> targets = new ArrayList<>(this.targets);
+		targets.sort(Comparator.comparingLong((Target t) -> t.nanos).reversed());
+		List<ConfigAggregate> configs = aggregateConfigs(targets);
+		long totalNanos = 0;
+
+		for (Target target : targets) {
+			totalNanos += target.nanos;
+		}
+
+		Log.info(LogCategory.MIXIN, "Mixin audit: %d targets transformed in %.1f ms, %d other classes passed through in %.1f ms",
+				targets.size(), totalNanos * 1e-6, untargetedCount.get(), untargetedNanos.get() * 1e-6);
+
+		for (int i = 0; i < configs.size() && i < LOGGED_CONFIG_COUNT; i++) {
+			ConfigAggregate config = configs.get(i);
+			Log.info(LogCategory.MIXIN, "  %s: %.1f ms for %d mixins on %d targets (%d injectors)",
+					config.name, config.nanos * 1e-6, config.mixins.size(), config.targets, config.injectors);
+		}
+
+		writer.write("{\n\t\"targets\": ");
+		writer.write(Integer.toString(targets.size()));
+		writer.write(", \"time\": ");
+		JsonUtil.writeMillis(writer, totalNanos);
+		writer.write(",\n\t\"untargeted\": ");
+		writer.write(Integer.toString(untargetedCount.get()));
+		writer.write(", \"untargetedTime\": ");
+		JsonUtil.writeMillis(writer, untargetedNanos.get());
+		writer.write(",\n\t\"generated\": {");
+
+		boolean first = true;
+
+		for (Map.Entry<String, AtomicInteger> entry : generated.entrySet()) {
+			if (!first) writer.write(", ");
+			first = false;
+			JsonUtil.writeString(writer, entry.getKey());
+			writer.write(": ");
+			writer.write(Integer.toString(entry.getValue().get()));
+		}
+
+		writer.write("},\n\t\"configs\": [");
+		first = true;
+
+		for (ConfigAggregate config : configs) {
+			writer.write(first ? "\n\t\t{\"name\": " : ",\n\t\t{\"name\": ");
+			first = false;
+			JsonUtil.writeString(writer, config.name);
+			writer.write(", \"mixins\": ");
+			writer.write(Integer.toString(config.mixins.size()));
+			writer.write(", \"targets\": ");
+			writer.write(Integer.toString(config.targets));
+			writer.write(", \"injectors\": ");
+			writer.write(Integer.toString(config.injectors));
+			writer.write(", \"time\": ");
+			JsonUtil.writeMillis(writer, config.nanos);
+			writer.write(", \"sizeDelta\": ");
+			writer.write(Long.toString(config.sizeDelta));
+			writer.write('}');
+		}
+
+		writer.write(first ? "],\n\t\"classes\": [" : "\n\t],\n\t\"classes\": [");
+		first = true;
+
+		for (Target target : targets) {
+			writer.write(first ? "\n\t\t{\"name\": " : ",\n\t\t{\"name\": ");
+			first = false;
+			JsonUtil.writeString(writer, target.name);
+			writer.write(", \"time\": ");
+			JsonUtil.writeMillis(writer, target.nanos);
+			writer.write(", \"sizeDelta\": ");
+			writer.write(Integer.toString(target.sizeDelta));
+			writer.write(", \"injectors\": ");
+			writer.write(Integer.toString(target.injectors));
+			writer.write(", \"mixins\": [");
+
+			for (int i = 0; i < target.mixins.size(); i++) {
+				if (i > 0) writer.write(", ");
+				JsonUtil.writeString(writer, target.mixins.get(i));
+			}
+
+			writer.write("]}");
+		}
+
+		writer.write(first ? "]\n}\n" : "\n\t]\n}\n");
+	}
+
+	private static List<ConfigAggregate> aggregateConfigs(Collection<Target> targets) {
+		Map<String, String> packageToConfig = new LinkedHashMap<>();
+
+		for (Config config : Mixins.getConfigs()) {
+			String pkg = config.getConfig().getMixinPackage();
+			if (pkg != null && !pkg.isEmpty()) packageToConfig.put(pkg, config.getName());
+		}
+
+		Map<String, Integer> injectorCounts = new HashMap<>();
+		Map<String, ConfigAggregate> configs = new HashMap<>();
+
+		for (Target target : targets) {
+			int count = target.mixins.size();
+			Set<String> targetConfigs = new HashSet<>();
+
+			for (String mixin : target.mixins) {
+				int injectors = injectorCounts.computeIfAbsent(mixin, name -> countInjectors(getMixinClass(name, packageToConfig)));
+				target.injectors += injectors;
+
+				ConfigAggregate config = configs.computeIfAbsent(getConfig(mixin, packageToConfig), ConfigAggregate::new);
+				config.mixins.add(mixin);
+				config.injectors += injectors;
+				config.nanos += target.nanos / count;
+				config.sizeDelta += target.sizeDelta / count;
+				if (targetConfigs.add(config.name)) config.targets++;
+			}
+		}
+
+		List<ConfigAggregate> ret = new ArrayList<>(configs.values());
+		ret.sort(Comparator.comparingLong((ConfigAggregate c) -> c.nanos).reversed());
+
+		return ret;
+	}
+
+	/**
+	 * Determine the config of a mixin as reported to the audit trail, either "config:mixin" or the mixin class name.
+	 */
+	private static String getConfig(String mixin, Map<String, String> packageToConfig) {
+		int pos = mixin.indexOf(':');
+		if (pos > 0) return mixin.substring(0, pos);
+
+		String ret = null;
+		int retLen = 0;
+
+		for (Map.Entry<String, String> entry : packageToConfig.entrySet()) { // longest matching package
+			if (mixin.startsWith(entry.getKey()) && entry.getKey().length() > retLen) {
+				ret = entry.getValue();
+				retLen = entry.getKey().length();
+			}
+		}
+
+		return ret != null ? ret : "<unknown>";
+	}
+
+	private static String getMixinClass(String mixin, Map<String, String> packageToConfig) {
+		int pos = mixin.indexOf(':');
+		if (pos < 0) return mixin;
+
+		String config = mixin.substring(0, pos);
+		String name = mixin.substring(pos + 1);
+
+		for (Map.Entry<String, String> entry : packageToConfig.entrySet()) {
+			if (entry.getValue().equals(config)) {
+				String pkg = entry.getKey();
+
+				return pkg.endsWith(".") ? pkg.concat(name) : pkg + "." + name;
+			}
+		}
+
+		return name;
+	}
+
+	private static int countInjectors(String mixinClass) {
+		byte[] bytes;
+
+		try {
+			bytes = FabricLauncherBase.getLauncher().getClassByteArray(mixinClass, false);
+		} catch (IOException e) {
+			bytes = null;
+		}
+
+		if (bytes == null) return 0;
+
+		AtomicInteger ret = new AtomicInteger();
+
+		new ClassReader(bytes).accept(new ClassVisitor(FabricLoaderImpl.ASM_VERSION) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+				return new MethodVisitor(FabricLoaderImpl.ASM_VERSION) {
+					@Override
+					public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+						if (INJECTOR_DESCRIPTORS.contains(desc) || desc.startsWith(MIXIN_EXTRAS_INJECTOR_PREFIX)) {
+							ret.incrementAndGet();
+						}
+
+						return null;
+					}
+				};
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+
+		return ret.get();
+	}
+
+	static final class Target {
+		final String name;
+		final Target parent;
+		final List<String> mixins = new ArrayList<>();
+		long nestedNanos;
+		long nanos;
+		int sizeDelta;
+		int injectors;
+
+		Target(String name, Target parent) {
+			this.name = name;
+			this.parent = parent;
+		}
+	}
+
+	private static final class ConfigAggregate {
+		final String name;
+		final Set<String> mixins = new HashSet<>();
+		int targets;
+		int injectors;
+		long nanos;
+		long sizeDelta;
+
+		ConfigAggregate(String name) {
+			this.name = name;
+		}
+	}
+}
@@ -18,9 +18,12 @@ package net.fabricmc.loader.impl.launch.knot;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
@@ -44,7 +47,19 @@ import net.fabricmc.loader.impl.launch.FabricLauncherBase;
 import net.fabricmc.loader.impl.util.UrlUtil;
 
 public class MixinServiceKnot implements IMixinService, IClassProvider, IClassBytecodeProvider, ITransformerProvider, IClassTracker {
+	private static final int CLASS_BYTES_CACHE_SIZE = 256;
+
 	static IMixinTransformer transformer;
+	static IMixinAuditTrail auditTrail;
+
+	// class name -> class bytes with and without transformers, access ordered for LRU eviction
+	private static final Map<String, CachedClassBytes> classBytesCache = new LinkedHashMap<String, CachedClassBytes>(CLASS_BYTES_CACHE_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedClassBytes> eldest) {
+			return size() > CLASS_BYTES_CACHE_SIZE;
+		}
+	};
+	private static int classBytesGeneration; // bumped by clearClassBytes, guarded by classBytesCache
 
 	private final ReEntranceLock lock;
 
@@ -78,12 +93,57 @@ public class MixinServiceKnot implements IMixinService, IClassProvider, IClassBy
 
 	@Override
 	public ClassNode getClassNode(String name, boolean runTransformers, int readerFlags) throws ClassNotFoundException, IOException {
-		ClassReader reader = new ClassReader(getClassBytes(name, runTransformers));
+		// Mixin modifies some of the nodes it obtains (e.g. mixin classes while pre-processing), so every call parses a
+		// fresh node and only the bytes are cached
+		ClassReader reader = new ClassReader(getCachedClassBytes(name, runTransformers));
 		ClassNode node = new ClassNode();
 		reader.accept(node, readerFlags);
 		return node;
 	}
 
+	private byte[] getCachedClassBytes(String name, boolean runTransformers) throws ClassNotFoundException, IOException {
+		String key = name.replace('/', '.');
+		byte[] ret;
+		int generation;
+
+		synchronized (classBytesCache) {
+			CachedClassBytes entry = classBytesCache.get(key);
+			ret = entry != null ? entry.get(runTransformers) : null;
+			generation = classBytesGeneration;
+		}
+
+		if (ret == null) {
+			ret = getClassBytes(name, runTransformers);
+
+			synchronized (classBytesCache) {
+				if (generation == classBytesGeneration) { // not obtained with outdated transformers
+					classBytesCache.computeIfAbsent(key, ignore -> new CachedClassBytes()).set(runTransformers, ret);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Drop the cached class bytes for a class, called once it got defined as Mixin stops reading it at that point.
+	 */
+	static void invalidateClassBytes(String name) {
+		synchronized (classBytesCache) {
+			classBytesCache.remove(name);
+		}
+	}
+
+	/**
+	 * Drop all cached class bytes, called once the transformers are initialized since bytes obtained before lack them.
+	 */
+	static void clearClassBytes() {
+		synchronized (classBytesCache) {
+			classBytesCache.clear();
+			classBytesGeneration++;
+		}
+	}
+
 	@Override
 	public URL[] getClassPath() {
 		// Mixin 0.7.x only uses getClassPath() to find itself; we implement CodeSource correctly,
@@ -168,7 +228,7 @@ public class MixinServiceKnot implements IMixinService, IClassProvider, IClassBy
 
 	@Override
 	public IMixinAuditTrail getAuditTrail() {
-		return null;
+		return auditTrail;
 	}
 
 	@Override
@@ -240,4 +300,24 @@ public class MixinServiceKnot implements IMixinService, IClassProvider, IClassBy
 	static IMixinTransformer getTransformer() {
 		return transformer;
 	}
+
+	private static final class CachedClassBytes {
+		// may be reclaimed under memory pressure
+		private SoftReference<byte[]> transformed;
+		private SoftReference<byte[]> raw;
+
+		byte[] get(boolean runTransformers) {
+			SoftReference<byte[]> ref = runTransformers ? transformed : raw;
+
+			return ref != null ? ref.get() : null;
+		}
+
+		void set(boolean runTransformers, byte[] bytes) {
+			if (runTransformers) {
+				transformed = new SoftReference<>(bytes);
+			} else {
+				raw = new SoftReference<>(bytes);
+			}
+		}
+	}
 }
@@ -34,6 +34,22 @@ abstract class CustomValueImpl implements CustomValue {
 	static final CustomValue BOOLEAN_FALSE = new BooleanImpl(false);
 	static final CustomValue NULL = new NullImpl();
 
+	static CustomValue createObject(Map<String, CustomValue> values) {
+		return new ObjectImpl(values);
+	}
+
+	static CustomValue createArray(List<CustomValue> entries) {
+		return new ArrayImpl(entries);
+	}
+
+	static CustomValue createString(String value) {
+		return new StringImpl(value);
+	}
+
+	static CustomValue createNumber(Number value) {
+		return new NumberImpl(value);
+	}
+
 	public static CustomValue readCustomValue(JsonReader reader) throws IOException, ParseMetadataException {
 		switch (reader.peek()) {
 		case BEGIN_OBJECT:
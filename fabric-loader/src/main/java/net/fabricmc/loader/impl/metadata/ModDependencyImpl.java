@@ -98,6 +98,10 @@ public final class ModDependencyImpl implements ModDependency {
 		return builder.toString();
 	}
 
+	List<String> getMatcherStrings() {
+		return matcherStringList;
+	}
+
 	@Override
 	public Collection<VersionPredicate> getVersionRequirements() {
 		return ranges;
@@ -16,16 +16,19 @@
 
 package net.fabricmc.loader.impl.metadata;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
 import net.fabricmc.loader.impl.lib.gson.JsonReader;
 import net.fabricmc.loader.impl.lib.gson.JsonToken;
+import net.fabricmc.loader.impl.util.SystemProperties;
 import net.fabricmc.loader.impl.util.log.Log;
 import net.fabricmc.loader.impl.util.log.LogCategory;
 
@@ -35,20 +38,45 @@ public final class ModMetadataParser {
 	 * Keys that will be ignored by any mod metadata parser.
 	 */
 	public static final Set<String> IGNORED_KEYS = Collections.singleton("$schema");
+	private static final boolean USE_FAST_PARSER = System.getProperty(SystemProperties.DEBUG_DISABLE_FAST_METADATA_PARSER) == null;
 
 	// Per the ECMA-404 (www.ecma-international.org/publications/files/ECMA-ST/ECMA-404.pdf), the JSON spec does not prohibit duplicate keys.
 	// For all intents and purposes of replicating the logic of Gson's fromJson before we have migrated to JsonReader, duplicate keys will replace previous entries.
 	public static LoaderModMetadata parseMetadata(InputStream is, String modPath, List<String> modParentPaths,
 			VersionOverrides versionOverrides, DependencyOverrides depOverrides, boolean isDevelopment) throws ParseMetadataException {
+		return applyOverrides(readMetadata(is, modPath, modParentPaths, isDevelopment), modPath, modParentPaths, versionOverrides, depOverrides, isDevelopment);
+	}
+
+	/**
+	 * Parse metadata without applying overrides or verifying it, for storing the result before completing it with
+	 * {@link #applyOverrides}.
+	 */
+	public static LoaderModMetadata readMetadata(InputStream is, String modPath, List<String> modParentPaths, boolean isDevelopment) throws ParseMetadataException {
 		try {
-			LoaderModMetadata ret = readModMetadata(is, isDevelopment);
+			return readModMetadata(is, isDevelopment);
+		} catch (ParseMetadataException e) {
+			e.setModPaths(modPath, modParentPaths);
+			throw e;
+		} catch (Throwable t) {
+			ParseMetadataException e = new ParseMetadataException(t);
+			e.setModPaths(modPath, modParentPaths);
+			throw e;
+		}
+	}
 
-			versionOverrides.apply(ret);
-			depOverrides.apply(ret);
+	/**
+	 * Apply version and dependency overrides to metadata from {@link #readMetadata} or {@link ModMetadataSerializer}
+	 * and verify the result.
+	 */
+	public static LoaderModMetadata applyOverrides(LoaderModMetadata metadata, String modPath, List<String> modParentPaths,
+			VersionOverrides versionOverrides, DependencyOverrides depOverrides, boolean isDevelopment) throws ParseMetadataException {
+		try {
+			versionOverrides.apply(metadata);
+			depOverrides.apply(metadata);
 
-			MetadataVerifier.verify(ret, isDevelopment);
+			MetadataVerifier.verify(metadata, isDevelopment);
 
-			return ret;
+			return metadata;
 		} catch (ParseMetadataException e) {
 			e.setModPaths(modPath, modParentPaths);
 			throw e;
@@ -59,7 +87,28 @@ public final class ModMetadataParser {
 		}
 	}
 
-	private static LoaderModMetadata readModMetadata(InputStream is, boolean isDevelopment) throws IOException, ParseMetadataException {
+	static LoaderModMetadata readModMetadata(InputStream is, boolean isDevelopment) throws IOException, ParseMetadataException {
+		if (!USE_FAST_PARSER) return readModMetadataJson(is, isDevelopment);
+
+		// try the byte level parser for the common case of a valid schema version 1 file first, it falls back to the
+		// JsonReader based parsing for anything else
+
+		byte[] data = new byte[Math.max(is.available(), 4096)];
+		int len = 0;
+		int read;
+
+		while ((read = is.read(data, len, data.length - len)) >= 0) {
+			len += read;
+			if (len == data.length) data = Arrays.copyOf(data, data.length * 2);
+		}
+
+		LoaderModMetadata ret = V1ModMetadataFastParser.parse(data, 0, len, isDevelopment);
+		if (ret != null) return ret;
+
+		return readModMetadataJson(new ByteArrayInputStream(data, 0, len), isDevelopment);
+	}
+
+	static LoaderModMetadata readModMetadataJson(InputStream is, boolean isDevelopment) throws IOException, ParseMetadataException {
 		// So some context:
 		// Per the json specification, ordering of fields is not typically enforced.
 		// Furthermore we cannot guarantee the `schemaVersion` is the first field in every `fabric.mod.json`
@@ -0,0 +1,493 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import net.fabricmc.loader.api.Version;
+import net.fabricmc.loader.api.VersionParsingException;
+import net.fabricmc.loader.api.metadata.ContactInformation;
+import net.fabricmc.loader.api.metadata.CustomValue;
+import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.api.metadata.ModEnvironment;
+import net.fabricmc.loader.api.metadata.Person;
+import net.fabricmc.loader.api.metadata.version.VersionPredicate;
+import net.fabricmc.loader.impl.util.version.VersionParser;
+
+/**
+ * Compact binary representation of parsed mod metadata, allowing to skip the JSON parsing for cached metadata.
+ *
+ * <p>Only schema version 1 metadata is supported, see {@link #canSerialize}. The data is meant to be written before
+ * applying version and dependency overrides, which then get applied after reading as usual. Any change to the
+ * encoding has to increment {@link #FORMAT_VERSION}, which users of the data should store alongside it.
+ */
+public final class ModMetadataSerializer {
+	public static final int FORMAT_VERSION = 2;
+
+	private static final int ICON_NONE = 0;
+	private static final int ICON_SINGLE = 1;
+	private static final int ICON_MAP = 2;
+
+	private static final ModEnvironment[] ENVIRONMENTS = ModEnvironment.values();
+	private static final ModDependency.Kind[] DEPENDENCY_KINDS = ModDependency.Kind.values();
+	private static final CustomValue.CvType[] CV_TYPES = CustomValue.CvType.values();
+	// upper bound for counts and string lengths, keeps corrupt data from causing huge allocations
+	private static final int MAX_LENGTH = 1 << 20;
+
+	private ModMetadataSerializer() { }
+
+	public static boolean canSerialize(LoaderModMetadata metadata) {
+		return metadata instanceof V1ModMetadata;
+	}
+
+	/**
+	 * Serialize metadata into a new byte array.
+	 *
+	 * @return the serialized metadata or null if the metadata type is not supported
+	 */
+	public static byte[] serialize(LoaderModMetadata metadata) {
+		if (!canSerialize(metadata)) return null;
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+
+		try {
+			write(metadata, new DataOutputStream(bos));
+		} catch (IOException e) {
+			throw new RuntimeException(e); // can't happen with ByteArrayOutputStream
+		}
+
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Read metadata written by {@link #serialize}.
+	 *
+	 * @throws IOException if the data is truncated or malformed, the metadata has to be parsed from its source instead
+	 */
+	public static LoaderModMetadata deserialize(byte[] data) throws IOException {
+		DataInputStream is = new DataInputStream(new ByteArrayInputStream(data));
+		LoaderModMetadata ret;
+
+		try {
+			ret = read(is);
+		} catch (RuntimeException e) { // malformed content passing read's checks, e.g. invalid metadata values
+			throw new IOException("invalid serialized metadata", e);
+		}
+
+		if (is.available() != 0) throw new IOException("trailing data after serialized metadata");
+
+		return ret;
+	}
+
+	public static void write(LoaderModMetadata metadata, DataOutput os) throws IOException {
+		if (!canSerialize(metadata)) throw new IllegalArgumentException("unsupported metadata type: "+metadata.getClass().getName());
+
+		V1ModMetadata md = (V1ModMetadata) metadata;
+
+		os.writeByte(md.getSchemaVersion());
+
+		writeString(os, md.getId());
+		writeString(os, md.getVersion().getFriendlyString());
+		writeStrings(os, md.getProvides());
+
+		os.writeByte(md.getEnvironment().ordinal());
+		os.writeInt(md.getEntrypointKeys().size());
+
+		for (String key : md.getEntrypointKeys()) {
+			List<EntrypointMetadata> entrypoints = md.getEntrypoints(key);
+			writeString(os, key);
+			os.writeInt(entrypoints.size());
+
+			for (EntrypointMetadata entrypoint : entrypoints) {
+				writeString(os, entrypoint.getAdapter());
+				writeString(os, entrypoint.getValue());
+			}
+		}
+
+		os.writeInt(md.getJars().size());
+
+		for (NestedJarEntry jar : md.getJars()) {
+			writeString(os, jar.getFile());
+		}
+
+		os.writeInt(md.getMixins().size());
+
+		for (V1ModMetadata.MixinEntry mixin : md.getMixins()) {
+			writeString(os, mixin.config);
+			os.writeByte(mixin.environment.ordinal());
+		}
+
+		writeString(os, md.getAccessWidener());
+		os.writeInt(md.getDependencies().size());
+
+		for (ModDependency dep : md.getDependencies()) {
+			os.writeByte(dep.getKind().ordinal());
+			writeString(os, dep.getModId());
+
+			if (dep instanceof ModDependencyImpl) {
+				writeStrings(os, ((ModDependencyImpl) dep).getMatcherStrings());
+			} else {
+				os.writeInt(dep.getVersionRequirements().size());
+
+				for (VersionPredicate predicate : dep.getVersionRequirements()) {
+					writeString(os, predicate.toString());
+				}
+			}
+		}
+
+		os.writeBoolean(md.hasRequires());
+		writeString(os, md.getRawName());
+		writeString(os, md.getDescription());
+		writePersons(os, md.getAuthors());
+		writePersons(os, md.getContributors());
+		writeStringMap(os, md.getContact().asMap());
+		writeStrings(os, md.getLicense());
+
+		V1ModMetadata.IconEntry icon = md.getIcon();
+
+		if (icon instanceof V1ModMetadata.Single) {
+			os.writeByte(ICON_SINGLE);
+			writeString(os, ((V1ModMetadata.Single) icon).icon);
+		} else if (icon instanceof V1ModMetadata.MapEntry) {
+			SortedMap<Integer, String> icons = ((V1ModMetadata.MapEntry) icon).icons;
+			os.writeByte(ICON_MAP);
+			os.writeInt(icons.size());
+
+			for (Map.Entry<Integer, String> entry : icons.entrySet()) {
+				os.writeInt(entry.getKey());
+				writeString(os, entry.getValue());
+			}
+		} else {
+			assert icon == V1ModMetadata.NO_ICON;
+			os.writeByte(ICON_NONE);
+		}
+
+		writeStringMap(os, md.getLanguageAdapterDefinitions());
+		os.writeInt(md.getCustomValues().size());
+
+		for (Map.Entry<String, CustomValue> entry : md.getCustomValues().entrySet()) {
+			writeString(os, entry.getKey());
+			writeCustomValue(os, entry.getValue());
+		}
+	}
+
+	public static LoaderModMetadata read(DataInput is) throws IOException {
+		int schemaVersion = is.readUnsignedByte();
+		if (schemaVersion != 1) throw new IOException("unsupported schema version: "+schemaVersion);
+
+		String id = readString(is);
+		Version version;
+
+		try {
+			version = VersionParser.parse(readString(is), false);
+		} catch (VersionParsingException e) {
+			throw new IOException("invalid version", e);
+		}
+
+		List<String> provides = readStrings(is);
+		ModEnvironment environment = readOrdinal(is, ENVIRONMENTS);
+		int count = readCount(is);
+		Map<String, List<EntrypointMetadata>> entrypoints = new HashMap<>(count);
+
+		for (int i = 0; i < count; i++) {
+			String key = readString(is);
+			int entrypointCount = readCount(is);
+			List<EntrypointMetadata> list = new ArrayList<>(entrypointCount);
+
+			for (int j = 0; j < entrypointCount; j++) {
+				list.add(new V1ModMetadata.EntrypointMetadataImpl(readString(is), readString(is)));
+			}
+
+			entrypoints.put(key, list);
+		}
+
+		count = readCount(is);
+		List<NestedJarEntry> jars = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			jars.add(new V1ModMetadata.JarEntry(readString(is)));
+		}
+
+		count = readCount(is);
+		List<V1ModMetadata.MixinEntry> mixins = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			mixins.add(new V1ModMetadata.MixinEntry(readString(is), readOrdinal(is, ENVIRONMENTS)));
+		}
+
+		String accessWidener = readString(is);
+		count = readCount(is);
+		List<ModDependency> dependencies = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			ModDependency.Kind kind = readOrdinal(is, DEPENDENCY_KINDS);
+			String modId = readString(is);
+
+			try {
+				dependencies.add(new ModDependencyImpl(kind, modId, readStrings(is)));
+			} catch (VersionParsingException e) {
+				throw new IOException("invalid dependency version predicate", e);
+			}
+		}
+
+		boolean hasRequires = is.readBoolean();
+		String name = readString(is);
+		String description = readString(is);
+		List<Person> authors = readPersons(is);
+		List<Person> contributors = readPersons(is);
+		Map<String, String> contactMap = readStringMap(is);
+		ContactInformation contact = contactMap.isEmpty() ? null : new ContactInformationImpl(contactMap);
+		List<String> license = readStrings(is);
+		V1ModMetadata.IconEntry icon;
+
+		switch (is.readUnsignedByte()) {
+		case ICON_NONE:
+			icon = null;
+			break;
+		case ICON_SINGLE:
+			icon = new V1ModMetadata.Single(readString(is));
+			break;
+		case ICON_MAP: {
+			SortedMap<Integer, String> icons = new TreeMap<>();
+
+			for (int i = 0, max = readCount(is); i < max; i++) {
+				icons.put(is.readInt(), readString(is));
+			}
+
+			icon = new V1ModMetadata.MapEntry(icons);
+			break;
+		}
+		default:
+			throw new IOException("invalid icon type");
+		}
+
+		Map<String, String> languageAdapters = readStringMap(is);
+		count = readCount(is);
+		Map<String, CustomValue> customValues = new HashMap<>(count);
+
+		for (int i = 0; i < count; i++) {
+			customValues.put(readString(is), readCustomValue(is));
+		}
+
+		return new V1ModMetadata(id, version, provides,
+				environment, entrypoints, jars, mixins, accessWidener,
+				dependencies, hasRequires,
+				name, description, authors, contributors, contact, license, icon,
+				languageAdapters, customValues);
+	}
+
+	private static void writePersons(DataOutput os, Collection<Person> persons) throws IOException {
+		os.writeInt(persons.size());
+
+		for (Person person : persons) {
+			writeString(os, person.getName());
+			os.writeBoolean(person instanceof ContactInfoBackedPerson); // object form, may still lack contact info
+			writeStringMap(os, person.getContact().asMap());
+		}
+	}
+
+	private static List<Person> readPersons(DataInput is) throws IOException {
+		int count = readCount(is);
+		List<Person> ret = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			String name = readString(is);
+			boolean hasContact = is.readBoolean();
+			Map<String, String> contact = readStringMap(is);
+
+			if (!hasContact) {
+				ret.add(new SimplePerson(name));
+			} else {
+				ret.add(new ContactInfoBackedPerson(name, contact.isEmpty() ? ContactInformation.EMPTY : new ContactInformationImpl(contact)));
+			}
+		}
+
+		return ret;
+	}
+
+	private static void writeCustomValue(DataOutput os, CustomValue value) throws IOException {
+		os.writeByte(value.getType().ordinal());
+
+		switch (value.getType()) {
+		case OBJECT: {
+			CustomValue.CvObject obj = value.getAsObject();
+			os.writeInt(obj.size());
+
+			for (Map.Entry<String, CustomValue> entry : obj) {
+				writeString(os, entry.getKey());
+				writeCustomValue(os, entry.getValue());
+			}
+
+			break;
+		}
+		case ARRAY: {
+			CustomValue.CvArray array = value.getAsArray();
+			os.writeInt(array.size());
+
+			for (CustomValue entry : array) {
+				writeCustomValue(os, entry);
+			}
+
+			break;
+		}
+		case STRING:
+			writeString(os, value.getAsString());
+			break;
+		case NUMBER:
+			os.writeDouble(value.getAsNumber().doubleValue()); // JSON numbers are always read as double
+			break;
+		case BOOLEAN:
+			os.writeBoolean(value.getAsBoolean());
+			break;
+		case NULL:
+			break;
+		}
+	}
+
+	private static CustomValue readCustomValue(DataInput is) throws IOException {
+		int type = is.readUnsignedByte();
+		if (type >= CV_TYPES.length) throw new IOException("invalid custom value type");
+
+		switch (CV_TYPES[type]) {
+		case OBJECT: {
+			int count = readCount(is);
+			Map<String, CustomValue> values = new LinkedHashMap<>(count);
+
+			for (int i = 0; i < count; i++) {
+				values.put(readString(is), readCustomValue(is));
+			}
+
+			return CustomValueImpl.createObject(values);
+		}
+		case ARRAY: {
+			int count = readCount(is);
+			List<CustomValue> entries = new ArrayList<>(count);
+
+			for (int i = 0; i < count; i++) {
+				entries.add(readCustomValue(is));
+			}
+
+			return CustomValueImpl.createArray(entries);
+		}
+		case STRING:
+			return CustomValueImpl.createString(readString(is));
+		case NUMBER:
+			return CustomValueImpl.createNumber(is.readDouble());
+		case BOOLEAN:
+			return is.readBoolean() ? CustomValueImpl.BOOLEAN_TRUE : CustomValueImpl.BOOLEAN_FALSE;
+		case NULL:
+			return CustomValueImpl.NULL;
+		default:
+			throw new IllegalStateException();
+		}
+	}
+
+	private static void writeStringMap(DataOutput os, Map<String, String> map) throws IOException {
+		os.writeInt(map.size());
+
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			writeString(os, entry.getKey());
+			writeString(os, entry.getValue());
+		}
+	}
+
+	private static Map<String, String> readStringMap(DataInput is) throws IOException {
+		int count = readCount(is);
+		if (count == 0) return Collections.emptyMap();
+
+		Map<String, String> ret = new HashMap<>(count);
+
+		for (int i = 0; i < count; i++) {
+			ret.put(readString(is), readString(is));
+		}
+
+		return ret;
+	}
+
+	private static void writeStrings(DataOutput os, Collection<String> strings) throws IOException {
+		os.writeInt(strings.size());
+
+		for (String s : strings) {
+			writeString(os, s);
+		}
+	}
+
+	private static List<String> readStrings(DataInput is) throws IOException {
+		int count = readCount(is);
+		List<String> ret = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			ret.add(readString(is));
+		}
+
+		return ret;
+	}
+
+	private static int readCount(DataInput is) throws IOException {
+		int ret = is.readInt();
+		if (ret < 0 || ret > MAX_LENGTH) throw new IOException("invalid count: "+ret);
+
+		return ret;
+	}
+
+	private static <T> T readOrdinal(DataInput is, T[] values) throws IOException {
+		int ret = is.readUnsignedByte();
+		if (ret >= values.length) throw new IOException("invalid "+values.getClass().getComponentType().getSimpleName()+" ordinal: "+ret);
+
+		return values[ret];
+	}
+
+	/**
+	 * Write a nullable string as UTF-8, unlike {@link DataOutput#writeUTF} without a length limit.
+	 */
+	private static void writeString(DataOutput os, String s) throws IOException {
+		if (s == null) {
+			os.writeInt(-1);
+		} else {
+			byte[] data = s.getBytes(StandardCharsets.UTF_8);
+			os.writeInt(data.length);
+			os.write(data);
+		}
+	}
+
+	private static String readString(DataInput is) throws IOException {
+		int len = is.readInt();
+		if (len < 0) return null;
+		if (len > MAX_LENGTH) throw new IOException("invalid string length: "+len);
+
+		byte[] data = new byte[len];
+		is.readFully(data);
+
+		return new String(data, StandardCharsets.UTF_8);
+	}
+}
@@ -273,6 +273,25 @@ final class V1ModMetadata extends AbstractModMetadata implements LoaderModMetada
 		return this.entrypoints.keySet();
 	}
 
+	// raw data for ModMetadataSerializer
+
+	/* @Nullable */
+	String getRawName() {
+		return this.name;
+	}
+
+	Collection<MixinEntry> getMixins() {
+		return this.mixins;
+	}
+
+	boolean hasRequires() {
+		return this.hasRequires;
+	}
+
+	IconEntry getIcon() {
+		return this.icon;
+	}
+
 	@Override
 	public void emitFormatWarnings() {
 		if (hasRequires) {
@@ -314,8 +333,8 @@ final class V1ModMetadata extends AbstractModMetadata implements LoaderModMetada
 	}
 
 	static final class MixinEntry {
-		private final String config;
-		private final ModEnvironment environment;
+		final String config;
+		final ModEnvironment environment;
 
 		MixinEntry(String config, ModEnvironment environment) {
 			this.config = config;
@@ -328,7 +347,7 @@ final class V1ModMetadata extends AbstractModMetadata implements LoaderModMetada
 	}
 
 	static final class Single implements IconEntry {
-		private final String icon;
+		final String icon;
 
 		Single(String icon) {
 			this.icon = icon;
@@ -341,7 +360,7 @@ final class V1ModMetadata extends AbstractModMetadata implements LoaderModMetada
 	}
 
 	static final class MapEntry implements IconEntry {
-		private final SortedMap<Integer, String> icons;
+		final SortedMap<Integer, String> icons;
 
 		MapEntry(SortedMap<Integer, String> icons) {
 			this.icons = icons;
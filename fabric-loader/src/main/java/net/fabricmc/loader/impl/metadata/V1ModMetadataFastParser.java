@@ -0,0 +1,750 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import net.fabricmc.loader.api.Version;
+import net.fabricmc.loader.api.VersionParsingException;
+import net.fabricmc.loader.api.metadata.ContactInformation;
+import net.fabricmc.loader.api.metadata.CustomValue;
+import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.api.metadata.ModEnvironment;
+import net.fabricmc.loader.api.metadata.Person;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+import net.fabricmc.loader.impl.util.version.VersionParser;
+
+/**
+ * Parser for well-formed {@code fabric.mod.json} files of schema version {@code 1}, operating directly on the UTF-8
+ * bytes.
+ *
+ * <p>It accepts {@code schemaVersion} anywhere within the root object without re-reading. Everything that isn't the
+ * plain success case for {@link V1ModMetadataParser} - other schema versions, lenient syntax, warnings and errors - makes
+ * it give up, leaving the file to the regular parser which produces the appropriate messages.
+ */
+final class V1ModMetadataFastParser {
+	private static final Fallback FALLBACK = new Fallback();
+	private static final String[] KNOWN_KEYS = { "schemaVersion", "id", "version", "provides", "environment", "entrypoints", "jars", "mixins",
+			"accessWidener", "depends", "recommends", "suggests", "conflicts", "breaks", "requires", "name", "description", "authors",
+			"contributors", "contact", "license", "icon", "languageAdapters", "custom", "file", "config", "adapter", "value",
+			"homepage", "sources", "issues", "email", "client", "server", "main", "*", "minecraft", "java", "fabricloader", "fabric-api" };
+	private static final byte[][] KNOWN_KEY_BYTES = new byte[KNOWN_KEYS.length][];
+
+	static {
+		for (int i = 0; i < KNOWN_KEYS.length; i++) {
+			KNOWN_KEY_BYTES[i] = KNOWN_KEYS[i].getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	private final byte[] data;
+	private final int end;
+	private int pos;
+
+	/**
+	 * Parse the supplied {@code fabric.mod.json} content.
+	 *
+	 * @return the metadata or null if the file has to be handled by the regular parser
+	 */
+	static LoaderModMetadata parse(byte[] data, int offset, int len, boolean isDevelopment) {
+		try {
+			return new V1ModMetadataFastParser(data, offset, len).parse(isDevelopment);
+		} catch (Fallback e) {
+			return null;
+		}
+	}
+
+	private V1ModMetadataFastParser(byte[] data, int offset, int len) {
+		this.data = data;
+		this.end = offset + len;
+		this.pos = offset;
+	}
+
+	private LoaderModMetadata parse(boolean isDevelopment) throws Fallback {
+		boolean hasSchemaVersion = false;
+		boolean schemaVersionFirst = true;
+
+		String id = null;
+		Version version = null;
+		List<String> provides = new ArrayList<>();
+		ModEnvironment environment = ModEnvironment.UNIVERSAL;
+		Map<String, List<EntrypointMetadata>> entrypoints = new HashMap<>();
+		List<NestedJarEntry> jars = new ArrayList<>();
+		List<V1ModMetadata.MixinEntry> mixins = new ArrayList<>();
+		String accessWidener = null;
+		List<ModDependency> dependencies = new ArrayList<>();
+		boolean hasRequires = false;
+		String name = null;
+		String description = null;
+		List<Person> authors = new ArrayList<>();
+		List<Person> contributors = new ArrayList<>();
+		ContactInformation contact = null;
+		List<String> license = new ArrayList<>();
+		V1ModMetadata.IconEntry icon = null;
+		Map<String, String> languageAdapters = new HashMap<>();
+		Map<String, CustomValue> customValues = new HashMap<>();
+
+		beginObject();
+
+		for (boolean first = true; hasNext('}', first); first = false) {
+			String key = nextName();
+
+			switch (key) {
+			case "schemaVersion":
+				if (nextInt() != 1) throw FALLBACK;
+				hasSchemaVersion = true;
+				break;
+			case "id":
+				id = nextString();
+				break;
+			case "version":
+				try {
+					version = VersionParser.parse(nextString(), false);
+				} catch (VersionParsingException e) {
+					throw FALLBACK;
+				}
+
+				break;
+			case "provides":
+				readStrings(provides);
+				break;
+			case "environment":
+				environment = readEnvironment();
+				break;
+			case "entrypoints":
+				readEntrypoints(entrypoints);
+				break;
+			case "jars":
+				readNestedJarEntries(jars);
+				break;
+			case "mixins":
+				readMixinConfigs(mixins);
+				break;
+			case "accessWidener":
+				accessWidener = nextString();
+				break;
+			case "depends":
+				readDependenciesContainer(ModDependency.Kind.DEPENDS, dependencies);
+				break;
+			case "recommends":
+				readDependenciesContainer(ModDependency.Kind.RECOMMENDS, dependencies);
+				break;
+			case "suggests":
+				readDependenciesContainer(ModDependency.Kind.SUGGESTS, dependencies);
+				break;
+			case "conflicts":
+				readDependenciesContainer(ModDependency.Kind.CONFLICTS, dependencies);
+				break;
+			case "breaks":
+				readDependenciesContainer(ModDependency.Kind.BREAKS, dependencies);
+				break;
+			case "requires":
+				hasRequires = true;
+				skipValue();
+				break;
+			case "name":
+				name = nextString();
+				break;
+			case "description":
+				description = nextString();
+				break;
+			case "authors":
+				readPeople(authors);
+				break;
+			case "contributors":
+				readPeople(contributors);
+				break;
+			case "contact":
+				contact = readContactInfo();
+				break;
+			case "license":
+				if (peek() == '"') {
+					license.add(nextString());
+				} else {
+					readStrings(license);
+				}
+
+				break;
+			case "icon":
+				icon = readIcon();
+				break;
+			case "languageAdapters":
+				readLanguageAdapters(languageAdapters);
+				break;
+			case "custom":
+				beginObject();
+
+				for (boolean firstValue = true; hasNext('}', firstValue); firstValue = false) {
+					customValues.put(nextName(), readCustomValue());
+				}
+
+				break;
+			default:
+				if (!ModMetadataParser.IGNORED_KEYS.contains(key)) throw FALLBACK; // would warn
+				skipValue();
+				break;
+			}
+
+			if (!hasSchemaVersion && !ModMetadataParser.IGNORED_KEYS.contains(key)) {
+				schemaVersionFirst = false;
+			}
+		}
+
+		if (!hasSchemaVersion || id == null || version == null) throw FALLBACK;
+
+		if (!schemaVersionFirst && isDevelopment) {
+			Log.warn(LogCategory.METADATA, "\"fabric.mod.json\" from mod %s did not have \"schemaVersion\" as first field.", id);
+		}
+
+		return new V1ModMetadata(id, version, provides,
+				environment, entrypoints, jars, mixins, accessWidener,
+				dependencies, hasRequires,
+				name, description, authors, contributors, contact, license, icon, languageAdapters, customValues);
+	}
+
+	private ModEnvironment readEnvironment() throws Fallback {
+		String environment = nextString().toLowerCase(Locale.ROOT);
+
+		if (environment.isEmpty() || environment.equals("*")) {
+			return ModEnvironment.UNIVERSAL;
+		} else if (environment.equals("client")) {
+			return ModEnvironment.CLIENT;
+		} else if (environment.equals("server")) {
+			return ModEnvironment.SERVER;
+		} else {
+			throw FALLBACK;
+		}
+	}
+
+	private void readEntrypoints(Map<String, List<EntrypointMetadata>> entrypoints) throws Fallback {
+		beginObject();
+
+		for (boolean first = true; hasNext('}', first); first = false) {
+			String key = nextName();
+			List<EntrypointMetadata> metadata = new ArrayList<>();
+
+			beginArray();
+
+			for (boolean firstEntry = true; hasNext(']', firstEntry); firstEntry = false) {
+				String adapter = "default";
+				String value = null;
+
+				if (peek() == '"') {
+					value = nextString();
+				} else {
+					beginObject();
+
+					for (boolean firstKey = true; hasNext('}', firstKey); firstKey = false) {
+						switch (nextName()) {
+						case "adapter":
+							adapter = nextString();
+							break;
+						case "value":
+							value = nextString();
+							break;
+						default:
+							throw FALLBACK;
+						}
+					}
+				}
+
+				if (value == null) throw FALLBACK;
+
+				metadata.add(new V1ModMetadata.EntrypointMetadataImpl(adapter, value));
+			}
+
+			entrypoints.put(key, metadata);
+		}
+	}
+
+	private void readNestedJarEntries(List<NestedJarEntry> jars) throws Fallback {
+		beginArray();
+
+		for (boolean first = true; hasNext(']', first); first = false) {
+			String file = null;
+
+			beginObject();
+
+			for (boolean firstKey = true; hasNext('}', firstKey); firstKey = false) {
+				if (!nextName().equals("file")) throw FALLBACK;
+
+				file = nextString();
+			}
+
+			if (file == null) throw FALLBACK;
+
+			jars.add(new V1ModMetadata.JarEntry(file));
+		}
+	}
+
+	private void readMixinConfigs(List<V1ModMetadata.MixinEntry> mixins) throws Fallback {
+		beginArray();
+
+		for (boolean first = true; hasNext(']', first); first = false) {
+			if (peek() == '"') {
+				mixins.add(new V1ModMetadata.MixinEntry(nextString(), ModEnvironment.UNIVERSAL));
+				continue;
+			}
+
+			String config = null;
+			ModEnvironment environment = ModEnvironment.UNIVERSAL;
+
+			beginObject();
+
+			for (boolean firstKey = true; hasNext('}', firstKey); firstKey = false) {
+				switch (nextName()) {
+				case "environment":
+					environment = readEnvironment();
+					break;
+				case "config":
+					config = nextString();
+					break;
+				default:
+					throw FALLBACK;
+				}
+			}
+
+			if (config == null) throw FALLBACK;
+
+			mixins.add(new V1ModMetadata.MixinEntry(config, environment));
+		}
+	}
+
+	private void readDependenciesContainer(ModDependency.Kind kind, List<ModDependency> out) throws Fallback {
+		beginObject();
+
+		for (boolean first = true; hasNext('}', first); first = false) {
+			String modId = nextName();
+			List<String> matcherStringList = new ArrayList<>();
+
+			if (peek() == '"') {
+				matcherStringList.add(nextString());
+			} else {
+				readStrings(matcherStringList);
+			}
+
+			try {
+				out.add(new ModDependencyImpl(kind, modId, matcherStringList));
+			} catch (VersionParsingException e) {
+				throw FALLBACK;
+			}
+		}
+	}
+
+	private void readPeople(List<Person> people) throws Fallback {
+		beginArray();
+
+		for (boolean first = true; hasNext(']', first); first = false) {
+			if (peek() == '"') {
+				people.add(new SimplePerson(nextString()));
+				continue;
+			}
+
+			String personName = null;
+			ContactInformation contactInformation = ContactInformation.EMPTY;
+
+			beginObject();
+
+			for (boolean firstKey = true; hasNext('}', firstKey); firstKey = false) {
+				switch (nextName()) {
+				case "name":
+					personName = nextString();
+					break;
+				case "contact":
+					contactInformation = readContactInfo();
+					break;
+				default:
+					throw FALLBACK;
+				}
+			}
+
+			if (personName == null) throw FALLBACK;
+
+			people.add(new ContactInfoBackedPerson(personName, contactInformation));
+		}
+	}
+
+	private ContactInformation readContactInfo() throws Fallback {
+		Map<String, String> map = new HashMap<>();
+
+		beginObject();
+
+		for (boolean first = true; hasNext('}', first); first = false) {
+			String key = nextName();
+			map.put(key, nextString());
+		}
+
+		return new ContactInformationImpl(map);
+	}
+
+	private V1ModMetadata.IconEntry readIcon() throws Fallback {
+		if (peek() == '"') return new V1ModMetadata.Single(nextString());
+
+		SortedMap<Integer, String> iconMap = new TreeMap<>(Comparator.naturalOrder());
+
+		beginObject();
+
+		for (boolean first = true; hasNext('}', first); first = false) {
+			int size;
+
+			try {
+				size = Integer.parseInt(nextName());
+			} catch (NumberFormatException e) {
+				throw FALLBACK;
+			}
+
+			if (size < 1) throw FALLBACK;
+
+			iconMap.put(size, nextString());
+		}
+
+		if (iconMap.isEmpty()) throw FALLBACK;
+
+		return new V1ModMetadata.MapEntry(iconMap);
+	}
+
+	private void readLanguageAdapters(Map<String, String> languageAdapters) throws Fallback {
+		beginObject();
+
+		for (boolean first = true; hasNext('}', first); first = false) {
+			String adapter = nextName();
+			languageAdapters.put(adapter, nextString());
+		}
+	}
+
+	private CustomValue readCustomValue() throws Fallback {
+		switch (peek()) {
+		case '{': {
+			Map<String, CustomValue> values = new LinkedHashMap<>();
+
+			beginObject();
+
+			for (boolean first = true; hasNext('}', first); first = false) {
+				String key = nextName();
+				values.put(key, readCustomValue());
+			}
+
+			return CustomValueImpl.createObject(values);
+		}
+		case '[': {
+			List<CustomValue> entries = new ArrayList<>();
+
+			beginArray();
+
+			for (boolean first = true; hasNext(']', first); first = false) {
+				entries.add(readCustomValue());
+			}
+
+			return CustomValueImpl.createArray(entries);
+		}
+		case '"':
+			return CustomValueImpl.createString(nextString());
+		case 't':
+			readLiteral("true");
+			return CustomValueImpl.BOOLEAN_TRUE;
+		case 'f':
+			readLiteral("false");
+			return CustomValueImpl.BOOLEAN_FALSE;
+		case 'n':
+			readLiteral("null");
+			return CustomValueImpl.NULL;
+		default:
+			return CustomValueImpl.createNumber(nextDouble());
+		}
+	}
+
+	private void readStrings(List<String> out) throws Fallback {
+		beginArray();
+
+		for (boolean first = true; hasNext(']', first); first = false) {
+			out.add(nextString());
+		}
+	}
+
+	// syntax level
+
+	/**
+	 * Skip whitespace and return the next byte without consuming it.
+	 */
+	private int peek() throws Fallback {
+		while (pos < end) {
+			byte b = data[pos];
+
+			if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+				return b;
+			}
+
+			pos++;
+		}
+
+		throw FALLBACK;
+	}
+
+	private void consume(char c) throws Fallback {
+		if (peek() != c) throw FALLBACK;
+
+		pos++;
+	}
+
+	private void beginObject() throws Fallback {
+		consume('{');
+	}
+
+	private void beginArray() throws Fallback {
+		consume('[');
+	}
+
+	/**
+	 * Determine whether the current object or array has another element, consuming the separator or closing bracket.
+	 */
+	private boolean hasNext(char close, boolean first) throws Fallback {
+		int b = peek();
+
+		if (b == close) {
+			pos++;
+			return false;
+		}
+
+		if (!first) consume(',');
+
+		return true;
+	}
+
+	private String nextName() throws Fallback {
+		String ret = nextString();
+		consume(':');
+
+		return ret;
+	}
+
+	private String nextString() throws Fallback {
+		consume('"');
+
+		int start = pos;
+		StringBuilder sb = null;
+
+		for (;;) {
+			if (pos >= end) throw FALLBACK;
+
+			byte b = data[pos];
+
+			if (b == '"') {
+				break;
+			} else if (b == '\\') {
+				if (sb == null) sb = new StringBuilder();
+				sb.append(new String(data, start, pos - start, StandardCharsets.UTF_8));
+				pos++;
+				sb.append(readEscape());
+				start = pos;
+			} else if (b >= 0 && b < 0x20) { // unescaped control character, regular parser decides
+				throw FALLBACK;
+			} else {
+				pos++;
+			}
+		}
+
+		String ret;
+
+		if (sb == null) {
+			ret = getKnownKey(start, pos - start);
+			if (ret == null) ret = new String(data, start, pos - start, StandardCharsets.UTF_8);
+		} else {
+			ret = sb.append(new String(data, start, pos - start, StandardCharsets.UTF_8)).toString();
+		}
+
+		pos++; // closing quote
+
+		return ret;
+	}
+
+	/**
+	 * Return the constant for frequently used strings to avoid allocating them.
+	 */
+	private String getKnownKey(int start, int len) {
+		for (int i = 0; i < KNOWN_KEY_BYTES.length; i++) {
+			byte[] key = KNOWN_KEY_BYTES[i];
+			if (key.length != len) continue;
+
+			int j = 0;
+
+			while (j < len && data[start + j] == key[j]) {
+				j++;
+			}
+
+			if (j == len) return KNOWN_KEYS[i];
+		}
+
+		return null;
+	}
+
+	private char readEscape() throws Fallback {
+		if (pos >= end) throw FALLBACK;
+
+		byte b = data[pos++];
+
+		switch (b) {
+		case '"':
+		case '\\':
+		case '/':
+			return (char) b;
+		case 'b':
+			return '\b';
+		case 'f':
+			return '\f';
+		case 'n':
+			return '\n';
+		case 'r':
+			return '\r';
+		case 't':
+			return '\t';
+		case 'u': {
+			if (end - pos < 4) throw FALLBACK;
+
+			int ret = 0;
+
+			for (int i = 0; i < 4; i++) {
+				int digit = Character.digit(data[pos++], 16);
+				if (digit < 0) throw FALLBACK;
+
+				ret = ret << 4 | digit;
+			}
+
+			return (char) ret;
+		}
+		default:
+			throw FALLBACK;
+		}
+	}
+
+	private int nextInt() throws Fallback {
+		double value = nextDouble();
+		int ret = (int) value;
+		if (ret != value) throw FALLBACK;
+
+		return ret;
+	}
+
+	private double nextDouble() throws Fallback {
+		peek();
+		int start = pos;
+
+		if (pos < end && data[pos] == '-') pos++;
+
+		int digitsStart = pos;
+		int digits = skipDigits();
+		if (digits == 0 || digits > 1 && data[digitsStart] == '0') throw FALLBACK; // leading zeros aren't valid json
+
+		if (pos < end && data[pos] == '.') {
+			pos++;
+			if (skipDigits() == 0) throw FALLBACK;
+		}
+
+		if (pos < end && (data[pos] == 'e' || data[pos] == 'E')) {
+			pos++;
+			if (pos < end && (data[pos] == '+' || data[pos] == '-')) pos++;
+			if (skipDigits() == 0) throw FALLBACK;
+		}
+
+		checkLiteralEnd();
+
+		double ret = Double.parseDouble(new String(data, start, pos - start, StandardCharsets.ISO_8859_1));
+		if (Double.isInfinite(ret)) throw FALLBACK;
+
+		return ret;
+	}
+
+	private int skipDigits() {
+		int start = pos;
+
+		while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+			pos++;
+		}
+
+		return pos - start;
+	}
+
+	private void readLiteral(String literal) throws Fallback {
+		for (int i = 0; i < literal.length(); i++) {
+			if (pos >= end || data[pos++] != literal.charAt(i)) throw FALLBACK;
+		}
+
+		checkLiteralEnd();
+	}
+
+	private void checkLiteralEnd() throws Fallback {
+		if (pos >= end) return;
+
+		byte b = data[pos];
+
+		if (b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '.' || b == '-' || b == '+' || b == '_') {
+			throw FALLBACK; // lenient syntax
+		}
+	}
+
+	private void skipValue() throws Fallback {
+		switch (peek()) {
+		case '{':
+			beginObject();
+
+			for (boolean first = true; hasNext('}', first); first = false) {
+				nextName();
+				skipValue();
+			}
+
+			break;
+		case '[':
+			beginArray();
+
+			for (boolean first = true; hasNext(']', first); first = false) {
+				skipValue();
+			}
+
+			break;
+		case '"':
+			nextString();
+			break;
+		case 't':
+			readLiteral("true");
+			break;
+		case 'f':
+			readLiteral("false");
+			break;
+		case 'n':
+			readLiteral("null");
+			break;
+		default:
+			nextDouble();
+			break;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class Fallback extends Exception {
+		Fallback() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -16,10 +16,12 @@
 
 package net.fabricmc.loader.impl.transformer;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.HashSet;
 
 import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -36,6 +38,9 @@ public class EnvironmentStrippingData extends ClassVisitor {
 	private static final String ENVIRONMENT_DESCRIPTOR = Type.getDescriptor(Environment.class);
 	private static final String ENVIRONMENT_INTERFACE_DESCRIPTOR = Type.getDescriptor(EnvironmentInterface.class);
 	private static final String ENVIRONMENT_INTERFACES_DESCRIPTOR = Type.getDescriptor(EnvironmentInterfaces.class);
+	// common prefix of all the descriptors above
+	private static final byte[] DESCRIPTOR_PREFIX = ENVIRONMENT_DESCRIPTOR.substring(0, ENVIRONMENT_DESCRIPTOR.length() - 1).getBytes(StandardCharsets.UTF_8);
+	private static final int CONSTANT_UTF8 = 1;
 
 	private final String envType;
 
@@ -151,6 +156,38 @@ public class EnvironmentStrippingData extends ClassVisitor {
 		};
 	}
 
+	/**
+	 * Check whether a class may use any environment annotations by looking for their descriptors in the constant pool,
+	 * which is much cheaper than visiting the class.
+	 *
+	 * <p>False positives are possible, e.g. for string constants equal to a descriptor, but no false negatives.
+	 */
+	public static boolean mayHaveEnvironmentAnnotations(ClassReader reader) {
+		for (int i = 1, max = reader.getItemCount(); i < max; i++) {
+			int offset = reader.getItem(i); // points after the tag, 0 for the unused slot after long/double
+
+			if (offset != 0
+					&& reader.readByte(offset - 1) == CONSTANT_UTF8
+					&& startsWithPrefix(reader, offset)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean startsWithPrefix(ClassReader reader, int offset) {
+		if (reader.readUnsignedShort(offset) < DESCRIPTOR_PREFIX.length) return false;
+
+		offset += 2;
+
+		for (int i = 0; i < DESCRIPTOR_PREFIX.length; i++) {
+			if ((byte) reader.readByte(offset + i) != DESCRIPTOR_PREFIX[i]) return false;
+		}
+
+		return true;
+	}
+
 	public boolean stripEntireClass() {
 		return stripEntireClass;
 	}
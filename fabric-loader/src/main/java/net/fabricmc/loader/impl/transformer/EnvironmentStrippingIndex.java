@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.transformer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.objectweb.asm.ClassReader;
+
+import net.fabricmc.loader.impl.util.HashUtil;
+import net.fabricmc.loader.impl.util.LoaderUtil;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Index of the classes in mod jars that may use environment annotations, letting all other classes skip
+ * {@link EnvironmentStrippingData} without looking at their bytes.
+ *
+ * <p>Jars are scanned once using {@link EnvironmentStrippingData#mayHaveEnvironmentAnnotations}, the result is stored
+ * in the cache dir keyed by the jar's path, size and modification time. Directories aren't indexed as their content
+ * may change at runtime.
+ */
+public final class EnvironmentStrippingIndex {
+	private static final int FORMAT_VERSION = 1;
+	private static final String CLASS_SUFFIX = ".class";
+	private static final String VERSIONS_DIR = "META-INF/versions/";
+	private static final String FILE_SUFFIX = ".txt";
+
+	private final Map<Path, Set<String>> jarClasses;
+
+	private EnvironmentStrippingIndex(Map<Path, Set<String>> jarClasses) {
+		this.jarClasses = jarClasses;
+	}
+
+	/**
+	 * Create the index for the supplied code sources, reusing and updating the cache dir's content.
+	 */
+	public static EnvironmentStrippingIndex create(Collection<Path> codeSources, Path cacheDir) {
+		long startTime = System.nanoTime();
+		Map<Path, Set<String>> jarClasses = new ConcurrentHashMap<>();
+		Set<String> usedFiles = ConcurrentHashMap.newKeySet();
+
+		try {
+			Files.createDirectories(cacheDir);
+		} catch (IOException e) {
+			Log.warn(LogCategory.GENERAL, "Can't create environment index dir %s", cacheDir, e);
+			return new EnvironmentStrippingIndex(jarClasses);
+		}
+
+		List<Path> jars = new ArrayList<>(codeSources.size());
+
+		for (Path path : codeSources) {
+			if (Files.isRegularFile(path)) jars.add(LoaderUtil.normalizeExistingPath(path));
+		}
+
+		jars.parallelStream().forEach(jar -> {
+			try {
+				Path file = cacheDir.resolve(getKey(jar).concat(FILE_SUFFIX));
+				usedFiles.add(file.getFileName().toString());
+				jarClasses.put(jar, getClasses(jar, file));
+			} catch (IOException e) {
+				Log.warn(LogCategory.GENERAL, "Error indexing %s for environment stripping", jar, e);
+			}
+		});
+
+		// remove index files for jars that are gone or changed
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+			for (Path file : stream) {
+				if (!usedFiles.contains(file.getFileName().toString())) {
+					Files.deleteIfExists(file);
+				}
+			}
+		} catch (IOException e) {
+			Log.debug(LogCategory.GENERAL, "Error cleaning environment index dir %s", cacheDir, e);
+		}
+
+		Log.debug(LogCategory.GENERAL, "Environment stripping index for %d jars created in %.1f ms", jarClasses.size(), (System.nanoTime() - startTime) * 1e-6);
+
+		return new EnvironmentStrippingIndex(jarClasses);
+	}
+
+	/**
+	 * Check whether a class may need environment stripping.
+	 *
+	 * @param codeSource the normalized code source the class is loaded from
+	 * @param name the class name in dot notation
+	 * @return false if the class is known to not use environment annotations
+	 */
+	public boolean mayNeedStripping(Path codeSource, String name) {
+		Set<String> classes = jarClasses.get(codeSource);
+
+		return classes == null || classes.contains(name);
+	}
+
+	private static String getKey(Path jar) throws IOException {
+		MessageDigest digest = HashUtil.createDigest();
+		HashUtil.update(digest, FORMAT_VERSION);
+		HashUtil.update(digest, jar.toString());
+		HashUtil.update(digest, Files.size(jar));
+		HashUtil.update(digest, Files.getLastModifiedTime(jar).toMillis());
+
+		return HashUtil.toHex(digest.digest()).substring(0, 16);
+	}
+
+	private static Set<String> getClasses(Path jar, Path file) throws IOException {
+		try {
+			return new HashSet<>(Files.readAllLines(file, StandardCharsets.UTF_8));
+		} catch (NoSuchFileException e) {
+			// not indexed yet
+		}
+
+		Set<String> ret = scan(jar);
+		Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+		try {
+			Files.write(tmpFile, ret, StandardCharsets.UTF_8);
+
+			try {
+				Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+
+		return ret;
+	}
+
+	private static Set<String> scan(Path jar) throws IOException {
+		Set<String> ret = new HashSet<>();
+
+		try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+			for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); ) {
+				ZipEntry entry = e.nextElement();
+				String name = entry.getName();
+				if (!name.endsWith(CLASS_SUFFIX) || entry.isDirectory()) continue;
+
+				if (name.startsWith(VERSIONS_DIR)) { // multi-release override, conservatively attribute to the base class
+					int pos = name.indexOf('/', VERSIONS_DIR.length());
+					if (pos < 0) continue;
+					name = name.substring(pos + 1);
+				}
+
+				byte[] data;
+
+				try (InputStream is = zipFile.getInputStream(entry)) {
+					data = readFully(is, entry.getSize());
+				}
+
+				boolean mayHaveAnnotations;
+
+				try {
+					mayHaveAnnotations = EnvironmentStrippingData.mayHaveEnvironmentAnnotations(new ClassReader(data));
+				} catch (RuntimeException ex) { // malformed class, leave it to the regular path
+					mayHaveAnnotations = true;
+				}
+
+				if (mayHaveAnnotations) {
+					ret.add(name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.'));
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	private static byte[] readFully(InputStream is, long size) throws IOException {
+		byte[] ret = new byte[size >= 0 && size < Integer.MAX_VALUE - 8 ? (int) size : 8192];
+		int pos = 0;
+		int len;
+
+		while ((len = is.read(ret, pos, ret.length - pos)) > 0) {
+			pos += len;
+
+			if (pos == ret.length) {
+				if (size >= 0 && pos == size) break;
+				ret = Arrays.copyOf(ret, ret.length * 2);
+			}
+		}
+
+		return pos == ret.length ? ret : Arrays.copyOf(ret, pos);
+	}
+}
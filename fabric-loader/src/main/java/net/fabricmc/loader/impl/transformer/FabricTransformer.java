@@ -27,49 +27,61 @@ import net.fabricmc.loader.impl.launch.FabricLauncherBase;
 
 public final class FabricTransformer {
 	public static byte[] transform(boolean isDevelopment, EnvType envType, String name, byte[] bytes) {
-		boolean isMinecraftClass = name.startsWith("net.minecraft.") || name.startsWith("com.mojang.blaze3d.") || name.indexOf('.') < 0;
+		return transform(isDevelopment, envType, name, bytes, true);
+	}
+
+	/**
+	 * @param mayNeedStripping false if the class is known to not use environment annotations, see {@link EnvironmentStrippingIndex}
+	 */
+	public static byte[] transform(boolean isDevelopment, EnvType envType, String name, byte[] bytes, boolean mayNeedStripping) {
+		boolean isMinecraftClass = isMinecraftClass(name);
 		boolean transformAccess = isMinecraftClass && FabricLauncherBase.getLauncher().getMappingConfiguration().requiresPackageAccessHack();
-		boolean environmentStrip = !isMinecraftClass || isDevelopment;
-		boolean applyAccessWidener = isMinecraftClass && FabricLoaderImpl.INSTANCE.getAccessWidener().getTargets().contains(name);
+		boolean environmentStrip = (!isMinecraftClass || isDevelopment) && mayNeedStripping;
+		boolean applyAccessWidener = isMinecraftClass && FabricLoaderImpl.INSTANCE.getAccessWidenerTargets().contains(name);
 
 		if (!transformAccess && !environmentStrip && !applyAccessWidener) {
 			return bytes;
 		}
 
 		ClassReader classReader = new ClassReader(bytes);
+		EnvironmentStrippingData stripData = null;
+
+		if (environmentStrip && EnvironmentStrippingData.mayHaveEnvironmentAnnotations(classReader)) {
+			// separate metadata pass so the main pass can keep ASM's verbatim method copying for anything not stripped
+			stripData = new EnvironmentStrippingData(FabricLoaderImpl.ASM_VERSION, envType.toString());
+			classReader.accept(stripData, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+
+			if (stripData.stripEntireClass()) {
+				throw new RuntimeException("Cannot load class " + name + " in environment type " + envType);
+			}
+
+			if (stripData.isEmpty()) stripData = null;
+		}
+
+		if (!transformAccess && !applyAccessWidener && stripData == null) { // nothing to do, skip the ClassWriter
+			return bytes;
+		}
+
 		ClassWriter classWriter = new ClassWriter(classReader, 0);
 		ClassVisitor visitor = classWriter;
-		int visitorCount = 0;
 
 		if (applyAccessWidener) {
 			visitor = AccessWidenerClassVisitor.createClassVisitor(FabricLoaderImpl.ASM_VERSION, visitor, FabricLoaderImpl.INSTANCE.getAccessWidener());
-			visitorCount++;
 		}
 
 		if (transformAccess) {
 			visitor = new PackageAccessFixer(FabricLoaderImpl.ASM_VERSION, visitor);
-			visitorCount++;
 		}
 
-		if (environmentStrip) {
-			EnvironmentStrippingData stripData = new EnvironmentStrippingData(FabricLoaderImpl.ASM_VERSION, envType.toString());
-			classReader.accept(stripData, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
-
-			if (stripData.stripEntireClass()) {
-				throw new RuntimeException("Cannot load class " + name + " in environment type " + envType);
-			}
-
-			if (!stripData.isEmpty()) {
-				visitor = new ClassStripper(FabricLoaderImpl.ASM_VERSION, visitor, stripData.getStripInterfaces(), stripData.getStripFields(), stripData.getStripMethods());
-				visitorCount++;
-			}
-		}
-
-		if (visitorCount <= 0) {
-			return bytes;
+		if (stripData != null) {
+			visitor = new ClassStripper(FabricLoaderImpl.ASM_VERSION, visitor, stripData.getStripInterfaces(), stripData.getStripFields(), stripData.getStripMethods());
 		}
 
 		classReader.accept(visitor, 0);
 		return classWriter.toByteArray();
 	}
+
+	public static boolean isMinecraftClass(String name) {
+		return name.startsWith("net.minecraft.") || name.startsWith("com.mojang.blaze3d.") || name.indexOf('.') < 0;
+	}
 }
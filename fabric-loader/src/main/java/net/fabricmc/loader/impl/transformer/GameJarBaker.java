@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.transformer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.impl.FabricLoaderImpl;
+import net.fabricmc.loader.impl.launch.FabricLauncherBase;
+import net.fabricmc.loader.impl.util.HashUtil;
+import net.fabricmc.loader.impl.util.log.Log;
+import net.fabricmc.loader.impl.util.log.LogCategory;
+
+/**
+ * Creates copies of game jars with {@link FabricTransformer}'s Minecraft class transformations (access widening and
+ * package access fixing) already applied, allowing the class loader to skip it for their Minecraft classes.
+ *
+ * <p>Baked jars are stored in the cache dir, named after the input jar and a digest of the access widener content,
+ * the input jar's path, size and modification time and everything else affecting the transformation.
+ */
+public final class GameJarBaker {
+	private static final int FORMAT_VERSION = 1;
+	private static final String CLASS_SUFFIX = ".class";
+	private static final String JAR_SUFFIX = ".jar";
+	private static final int KEY_LENGTH = 16;
+
+	/**
+	 * Get the baked variant of a jar, creating it if needed.
+	 *
+	 * @return the baked jar or null if the jar doesn't contain anything to bake or baking failed
+	 */
+	public static Path bake(Path jar, Path cacheDir, EnvType envType) {
+		FabricLoaderImpl loader = FabricLoaderImpl.INSTANCE;
+		Set<String> targets = loader.getAccessWidenerTargets();
+		boolean fixPackageAccess = FabricLauncherBase.getLauncher().getMappingConfiguration().requiresPackageAccessHack();
+
+		if (targets.isEmpty() && !fixPackageAccess) return null; // nothing FabricTransformer would do for Minecraft classes
+		if (!Files.isRegularFile(jar)) return null;
+
+		try {
+			if (!containsBakeableClasses(jar, targets, fixPackageAccess)) return null;
+
+			String fileName = jar.getFileName().toString();
+			if (fileName.endsWith(JAR_SUFFIX)) fileName = fileName.substring(0, fileName.length() - JAR_SUFFIX.length());
+			String prefix = fileName.concat("-");
+
+			Path output = cacheDir.resolve(prefix + getKey(jar, envType, fixPackageAccess) + JAR_SUFFIX);
+
+			if (!Files.exists(output)) {
+				long startTime = System.nanoTime();
+
+				Files.createDirectories(cacheDir);
+				removeOutdated(cacheDir, prefix);
+				write(jar, output, envType);
+
+				Log.debug(LogCategory.GAME_REMAP, "Baked %s into %s in %.1f ms", jar, output, (System.nanoTime() - startTime) * 1e-6);
+			}
+
+			return output;
+		} catch (IOException | RuntimeException e) {
+			Log.warn(LogCategory.GAME_REMAP, "Error baking %s, using it as is", jar, e);
+			return null;
+		}
+	}
+
+	private static boolean containsBakeableClasses(Path jar, Set<String> targets, boolean fixPackageAccess) throws IOException {
+		try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+			for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); ) {
+				String name = getClassName(e.nextElement());
+
+				if (name != null
+						&& FabricTransformer.isMinecraftClass(name)
+						&& (fixPackageAccess || targets.contains(name))) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private static String getKey(Path jar, EnvType envType, boolean fixPackageAccess) throws IOException {
+		MessageDigest digest = HashUtil.createDigest();
+		HashUtil.update(digest, FORMAT_VERSION);
+		HashUtil.update(digest, FabricLoaderImpl.VERSION);
+		HashUtil.update(digest, envType.name());
+		HashUtil.update(digest, FabricLoaderImpl.INSTANCE.getAccessWidenerHash());
+		HashUtil.update(digest, fixPackageAccess ? 1 : 0);
+		HashUtil.update(digest, jar.toString());
+		HashUtil.update(digest, Files.size(jar));
+		HashUtil.update(digest, Files.getLastModifiedTime(jar).toMillis());
+
+		return HashUtil.toHex(digest.digest()).substring(0, KEY_LENGTH);
+	}
+
+	/**
+	 * Remove the baked variants of the same jar created for other access wideners or jar versions.
+	 */
+	private static void removeOutdated(Path cacheDir, String prefix) throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+			for (Path file : stream) {
+				String name = file.getFileName().toString();
+
+				if (name.startsWith(prefix)
+						&& name.length() == prefix.length() + KEY_LENGTH + JAR_SUFFIX.length()
+						&& name.endsWith(JAR_SUFFIX)) {
+					Files.deleteIfExists(file);
+				}
+			}
+		}
+	}
+
+	private static void write(Path jar, Path output, EnvType envType) throws IOException {
+		Path tmpFile = Files.createTempFile(output.getParent(), output.getFileName().toString(), ".tmp");
+
+		try {
+			try (ZipFile zipFile = new ZipFile(jar.toFile());
+					OutputStream os = Files.newOutputStream(tmpFile);
+					ZipOutputStream zos = new ZipOutputStream(os)) {
+				byte[] buffer = new byte[8192];
+
+				for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); ) {
+					ZipEntry entry = e.nextElement();
+					if (isSignatureFile(entry.getName())) continue; // modified classes would invalidate signatures
+
+					String name = getClassName(entry);
+					ZipEntry outEntry = new ZipEntry(entry.getName());
+					outEntry.setTime(entry.getTime());
+					zos.putNextEntry(outEntry);
+
+					try (InputStream is = zipFile.getInputStream(entry)) {
+						if (name != null && FabricTransformer.isMinecraftClass(name)) {
+							ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max((int) entry.getSize(), 32));
+							int len;
+
+							while ((len = is.read(buffer)) > 0) {
+								bos.write(buffer, 0, len);
+							}
+
+							zos.write(FabricTransformer.transform(false, envType, name, bos.toByteArray(), false));
+						} else {
+							int len;
+
+							while ((len = is.read(buffer)) > 0) {
+								zos.write(buffer, 0, len);
+							}
+						}
+					}
+
+					zos.closeEntry();
+				}
+			}
+
+			try {
+				Files.move(tmpFile, output, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmpFile, output, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmpFile);
+		}
+	}
+
+	private static String getClassName(ZipEntry entry) {
+		String name = entry.getName();
+		if (entry.isDirectory() || !name.endsWith(CLASS_SUFFIX) || name.startsWith("META-INF/")) return null;
+
+		return name.substring(0, name.length() - CLASS_SUFFIX.length()).replace('/', '.');
+	}
+
+	private static boolean isSignatureFile(String name) {
+		if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) >= 0) return false;
+
+		name = name.toUpperCase(Locale.ENGLISH);
+
+		return name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC");
+	}
+}
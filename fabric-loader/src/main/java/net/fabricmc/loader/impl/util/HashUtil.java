@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public final class HashUtil {
+	private static final String ALGORITHM = "SHA-256";
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(HashUtil::createDigest);
+
+	private HashUtil() { }
+
+	public static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e); // SHA-256 is required to be present by the Java spec
+		}
+	}
+
+	/**
+	 * Compute the digest of the supplied data, reusing a thread local digest instance.
+	 */
+	public static byte[] hash(byte[] data) {
+		return hash(data, 0, data.length);
+	}
+
+	public static byte[] hash(byte[] data, int offset, int len) {
+		MessageDigest digest = DIGESTS.get();
+		digest.update(data, offset, len);
+
+		return digest.digest();
+	}
+
+	public static byte[] hash(Path file) throws IOException {
+		MessageDigest digest = DIGESTS.get();
+		digest.reset();
+
+		try (InputStream is = Files.newInputStream(file)) {
+			update(digest, is);
+		}
+
+		return digest.digest();
+	}
+
+	public static void update(MessageDigest digest, InputStream is) throws IOException {
+		byte[] buffer = new byte[8192];
+		int len;
+
+		while ((len = is.read(buffer)) > 0) {
+			digest.update(buffer, 0, len);
+		}
+	}
+
+	/**
+	 * Add a string to the digest, terminated to keep adjacent strings from running into each other.
+	 */
+	public static void update(MessageDigest digest, String str) {
+		digest.update(str.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	public static void update(MessageDigest digest, long value) {
+		for (int i = 56; i >= 0; i -= 8) {
+			digest.update((byte) (value >>> i));
+		}
+	}
+
+	public static String toHex(byte[] hash) {
+		char[] ret = new char[hash.length * 2];
+
+		for (int i = 0; i < hash.length; i++) {
+			ret[i * 2] = HEX_DIGITS[(hash[i] >>> 4) & 0xf];
+			ret[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
+		}
+
+		return new String(ret);
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Helpers for the hand written JSON of the diagnostic reports.
+ */
+public final class JsonUtil {
+	private JsonUtil() { }
+
+	/**
+	 * Write a duration as milliseconds with a fixed precision.
+	 */
+	public static void writeMillis(Writer writer, long nanos) throws IOException {
+		writer.write(String.format(Locale.ROOT, "%.3f", nanos * 1e-6));
+	}
+
+	/**
+	 * Write a string literal, escaping quotes, backslashes and control characters.
+	 */
+	public static void writeString(Writer writer, String str) throws IOException {
+		writer.write('"');
+
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+
+			if (c == '"' || c == '\\') {
+				writer.write('\\');
+				writer.write(c);
+			} else if (c < 0x20) {
+				writer.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			} else {
+				writer.write(c);
+			}
+		}
+
+		writer.write('"');
+	}
+}
@@ -44,6 +44,20 @@ public final class SystemProperties {
 	public static final String PATH_GROUPS = "fabric.classPathGroups";
 	// enable the fixing of package access errors in the game jar(s)
 	public static final String FIX_PACKAGE_ACCESS = "fabric.fixPackageAccess";
+	// disables the persistent cache for transformed classes in .fabric/classCache
+	public static final String DISABLE_CLASS_CACHE = "fabric.disableClassCache";
+	// disables reusing the mod discovery results for unchanged mod jars from .fabric/discoveryIndex/<env>.bin
+	public static final String DISABLE_DISCOVERY_INDEX = "fabric.disableDiscoveryIndex";
+	// number of threads for scanning mod jars during discovery, defaults to the CPU count capped at 8
+	public static final String DISCOVERY_THREADS = "fabric.discoveryThreads";
+	// disables reusing the mod resolution result for an unchanged mod set from .fabric/resolutionCache.bin
+	public static final String DISABLE_RESOLUTION_CACHE = "fabric.disableResolutionCache";
+	// loads the classes recorded during the previous startup in parallel before launching the game, list stored in .fabric/classList
+	public static final String CLASS_WARMUP = "fabric.classWarmup";
+	// applies access wideners to game jars ahead of time, stored in .fabric/bakedJars
+	public static final String BAKE_GAME_JARS = "fabric.bakeGameJars";
+	// applies mixins to all their target classes on a thread pool during startup, output additionally stored in the class cache
+	public static final String MIXIN_AOT = "fabric.mixin.aot";
 	// system level libraries, matching code sources will not be assumed to be part of the game or mods and remain on the system class path (paths separated by path separator)
 	public static final String SYSTEM_LIBRARIES = "fabric.systemLibraries";
 	// throw exceptions from entrypoints, discovery etc. directly instead of gathering and attaching as suppressed
@@ -54,8 +68,14 @@ public final class SystemProperties {
 	public static final String DEBUG_LOG_CLASS_LOAD = "fabric.debug.logClassLoad";
 	// logs class loading errors to uncover caught exceptions without adequate logging
 	public static final String DEBUG_LOG_CLASS_LOAD_ERRORS = "fabric.debug.logClassLoadErrors";
+	// records per-class load timings by phase, written to .fabric/classLoadTimings.json at the end of startup
+	public static final String DEBUG_CLASS_LOAD_TIMINGS = "fabric.debug.classLoadTimings";
+	// records the time, injector count and size change of mixin applications, written to .fabric/mixinAudit.json at the end of startup
+	public static final String DEBUG_MIXIN_AUDIT = "fabric.debug.mixinAudit";
 	// logs class transformation errors to uncover caught exceptions without adequate logging
 	public static final String DEBUG_LOG_TRANSFORM_ERRORS = "fabric.debug.logTransformErrors";
+	// disables the byte level fabric.mod.json parser, always using the JsonReader based one
+	public static final String DEBUG_DISABLE_FAST_METADATA_PARSER = "fabric.debug.disableFastMetadataParser";
 	// disables system class path isolation, allowing bogus lib accesses (too early, transient jars)
 	public static final String DEBUG_DISABLE_CLASS_PATH_ISOLATION = "fabric.debug.disableClassPathIsolation";
 	// disables mod load order shuffling to be the same in-dev as in production
@@ -39,7 +39,11 @@ import net.fabricmc.loader.api.VersionParsingException;
 public class SemanticVersionImpl extends net.fabricmc.loader.util.version.SemanticVersionImpl implements SemanticVersion {
 	private static final Pattern DOT_SEPARATED_ID = Pattern.compile("|[-0-9A-Za-z]+(\\.[-0-9A-Za-z]+)*");
 	private static final Pattern UNSIGNED_INTEGER = Pattern.compile("0|[1-9][0-9]*");
+	private static final int PACKED_COMPONENTS = 4;
+	private static final int PACKED_COMPONENT_BITS = 16;
+	private static final long NOT_PACKED = -1;
 	private final int[] components;
+	private final long packedComponents; // up to 4 components packed into a long for cheap comparisons or NOT_PACKED
 	private final String prerelease;
 	private final String build;
 	private String friendlyName;
@@ -124,6 +128,7 @@ public class SemanticVersionImpl extends net.fabricmc.loader.util.version.Semant
 		}
 
 		this.components = components;
+		this.packedComponents = packComponents(components);
 
 		buildFriendlyName();
 	}
@@ -132,12 +137,33 @@ public class SemanticVersionImpl extends net.fabricmc.loader.util.version.Semant
 		if (components.length == 0 || components[0] == COMPONENT_WILDCARD) throw new IllegalArgumentException("Invalid components: "+Arrays.toString(components));
 
 		this.components = components;
+		this.packedComponents = packComponents(components);
 		this.prerelease = prerelease;
 		this.build = build;
 
 		buildFriendlyName();
 	}
 
+	/**
+	 * Pack the version components into a long that compares like the components, with missing components being 0.
+	 *
+	 * @return the packed components or NOT_PACKED if there are too many, too large or wildcard components
+	 */
+	private static long packComponents(int[] components) {
+		if (components.length > PACKED_COMPONENTS) return NOT_PACKED;
+
+		long ret = 0;
+
+		for (int i = 0; i < PACKED_COMPONENTS; i++) {
+			int component = i < components.length ? components[i] : 0;
+			if (component < 0 || component >= (1 << PACKED_COMPONENT_BITS) - 1) return NOT_PACKED; // wildcard or too large, all bits set is reserved
+
+			ret = ret << PACKED_COMPONENT_BITS | component;
+		}
+
+		return ret;
+	}
+
 	private void buildFriendlyName() {
 		StringBuilder fnBuilder = new StringBuilder();
 		boolean first = true;
@@ -251,7 +277,14 @@ public class SemanticVersionImpl extends net.fabricmc.loader.util.version.Semant
 
 	@Override
 	public int compareTo(Version other) {
-		if (!(other instanceof SemanticVersion)) {
+		if (other instanceof SemanticVersionImpl) { // fast path for the common case of short versions
+			SemanticVersionImpl o = (SemanticVersionImpl) other;
+
+			if (packedComponents != NOT_PACKED && o.packedComponents != NOT_PACKED) {
+				int compare = Long.compareUnsigned(packedComponents, o.packedComponents);
+				if (compare != 0 || (prerelease == null && o.prerelease == null)) return compare;
+			}
+		} else if (!(other instanceof SemanticVersion)) {
 			return getFriendlyString().compareTo(other.getFriendlyString());
 		}
 
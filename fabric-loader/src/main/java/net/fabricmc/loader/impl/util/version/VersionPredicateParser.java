@@ -21,8 +21,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.fabricmc.loader.api.SemanticVersion;
 import net.fabricmc.loader.api.Version;
@@ -34,8 +36,21 @@ import net.fabricmc.loader.api.metadata.version.VersionPredicate.PredicateTerm;
 
 public final class VersionPredicateParser {
 	private static final VersionComparisonOperator[] OPERATORS = VersionComparisonOperator.values();
+	private static final Map<String, VersionPredicate> CACHE = new ConcurrentHashMap<>(); // predicates are immutable, mods tend to share the same few predicate strings
 
 	public static VersionPredicate parse(String predicate) throws VersionParsingException {
+		VersionPredicate ret = CACHE.get(predicate);
+
+		if (ret == null) {
+			ret = parse0(predicate);
+			VersionPredicate prev = CACHE.putIfAbsent(predicate, ret);
+			if (prev != null) ret = prev;
+		}
+
+		return ret;
+	}
+
+	private static VersionPredicate parse0(String predicate) throws VersionParsingException {
 		List<SingleVersionPredicate> predicateList = new ArrayList<>();
 
 		for (String s : predicate.split(" ")) {
@@ -141,6 +156,7 @@ public final class VersionPredicateParser {
 	static class SingleVersionPredicate implements VersionPredicate, PredicateTerm {
 		private final VersionComparisonOperator operator;
 		private final Version refVersion;
+		private VersionInterval interval; // lazily computed, racy initialization is fine since intervals are immutable
 
 		SingleVersionPredicate(VersionComparisonOperator operator, Version refVersion) {
 			this.operator = operator;
@@ -161,14 +177,21 @@ public final class VersionPredicateParser {
 
 		@Override
 		public VersionInterval getInterval() {
+			VersionInterval ret = interval;
+			if (ret != null) return ret;
+
 			if (refVersion instanceof SemanticVersion) {
 				SemanticVersion version = (SemanticVersion) refVersion;
 
-				return new VersionIntervalImpl(operator.minVersion(version), operator.isMinInclusive(),
+				ret = new VersionIntervalImpl(operator.minVersion(version), operator.isMinInclusive(),
 						operator.maxVersion(version), operator.isMaxInclusive());
 			} else {
-				return new VersionIntervalImpl(refVersion, true, refVersion, true);
+				ret = new VersionIntervalImpl(refVersion, true, refVersion, true);
 			}
+
+			interval = ret;
+
+			return ret;
 		}
 
 		@Override
@@ -205,6 +228,7 @@ public final class VersionPredicateParser {
 
 	static class MultiVersionPredicate implements VersionPredicate {
 		private final List<SingleVersionPredicate> predicates;
+		private VersionInterval interval; // lazily computed, see SingleVersionPredicate
 
 		MultiVersionPredicate(List<SingleVersionPredicate> predicates) {
 			this.predicates = predicates;
@@ -230,12 +254,17 @@ public final class VersionPredicateParser {
 		public VersionInterval getInterval() {
 			if (predicates.isEmpty()) return AnyVersionPredicate.INSTANCE.getInterval();
 
-			VersionInterval ret = predicates.get(0).getInterval();
+			VersionInterval ret = interval;
+			if (ret != null) return ret;
+
+			ret = predicates.get(0).getInterval();
 
 			for (int i = 1; i < predicates.size(); i++) {
 				ret = VersionIntervalImpl.and(ret, predicates.get(i).getInterval());
 			}
 
+			interval = ret; // stays null for empty intervals, those get recomputed
+
 			return ret;
 		}
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.launch.knot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import net.fabricmc.loader.impl.util.LoaderUtil;
+import net.fabricmc.loader.impl.util.UrlConversionException;
+import net.fabricmc.loader.impl.util.UrlUtil;
+
+/**
+ * Compares the class file lookup done for a Knot class load against the previous URL based one.
+ *
+ * <p>The URL based lookup mirrors what tryLoadClass used to do: three getResource calls (prefix check, metadata and
+ * reading), each parsing the URL back into a normalized code source path, and reading through the URL connection.
+ * The indexed lookup resolves the class file once through {@link CodeSourceIndex} and reads it directly.
+ *
+ * <p>Run the main method with the jars to use as code sources, a mods folder or a game's libraries make for a
+ * realistic setup. The jars on the class path are used if no arguments are supplied.
+ */
+public final class ClassLookupBenchmark {
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException, UrlConversionException {
+		List<Path> jars = new ArrayList<>();
+
+		if (args.length == 0) args = System.getProperty("java.class.path").split(File.pathSeparator);
+
+		for (String arg : args) {
+			Path path = Paths.get(arg);
+
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> stream = Files.list(path)) {
+					stream.filter(p -> p.getFileName().toString().endsWith(".jar")).sorted().forEach(jars::add);
+				}
+			} else if (arg.endsWith(".jar") && Files.isRegularFile(path)) {
+				jars.add(path);
+			}
+		}
+
+		CodeSourceIndex index = new CodeSourceIndex();
+		URL[] urls = new URL[jars.size()];
+		List<String> fileNames = new ArrayList<>();
+
+		for (int i = 0; i < jars.size(); i++) {
+			Path jar = LoaderUtil.normalizeExistingPath(jars.get(i));
+			index.add(jar);
+			urls[i] = UrlUtil.asUrl(jar);
+
+			try (ZipFile zf = new ZipFile(jar.toFile())) {
+				for (Enumeration<? extends ZipEntry> e = zf.entries(); e.hasMoreElements(); ) {
+					String name = e.nextElement().getName();
+					if (name.endsWith(".class") && !name.startsWith("META-INF/")) fileNames.add(name);
+				}
+			}
+		}
+
+		System.out.printf("corpus: %d jars, %d class files%n", jars.size(), fileNames.size());
+
+		try (URLClassLoader urlLoader = new URLClassLoader(urls, null)) {
+			for (int i = 0; i < WARMUP_ROUNDS; i++) {
+				runUrl(urlLoader, fileNames);
+				runIndexed(index, fileNames);
+			}
+
+			for (int i = 0; i < ROUNDS; i++) {
+				print("url", runUrl(urlLoader, fileNames), fileNames.size());
+				print("indexed", runIndexed(index, fileNames), fileNames.size());
+			}
+		}
+	}
+
+	private static long runUrl(URLClassLoader loader, List<String> fileNames) throws IOException, UrlConversionException {
+		long blackhole = 0;
+		long startTime = System.nanoTime();
+
+		for (String fileName : fileNames) {
+			URL url = null;
+
+			for (int i = 0; i < 3; i++) {
+				url = loader.getResource(fileName);
+				blackhole += LoaderUtil.normalizeExistingPath(UrlUtil.getCodeSource(url, fileName)).getNameCount();
+			}
+
+			try (InputStream is = url.openStream()) {
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+				int len;
+
+				while ((len = is.read(buffer)) > 0) {
+					os.write(buffer, 0, len);
+				}
+
+				blackhole += os.size();
+			}
+		}
+
+		return finish(startTime, blackhole);
+	}
+
+	private static long runIndexed(CodeSourceIndex index, List<String> fileNames) throws IOException {
+		long blackhole = 0;
+		long startTime = System.nanoTime();
+
+		for (String fileName : fileNames) {
+			CodeSourceIndex.Source source = index.findSource(fileName);
+			blackhole += source.path.getNameCount();
+			blackhole += source.read(fileName).length;
+		}
+
+		return finish(startTime, blackhole);
+	}
+
+	private static long finish(long startTime, long blackhole) {
+		long time = System.nanoTime() - startTime;
+		if (blackhole == 0) throw new IllegalStateException();
+
+		return time;
+	}
+
+	private static void print(String name, long time, int count) {
+		System.out.printf("%s: %.2f us per class%n", name, time * 1e-3 / count);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compares the byte level parser against the JsonReader based one.
+ *
+ * <p>Run the main method with directories or files to use as the corpus: fabric.mod.json files and mod jars, which
+ * get their fabric.mod.json extracted. A mods folder makes for a realistic corpus, the spec test files are used if no
+ * arguments are supplied.
+ */
+public final class ModMetadataParserBenchmark {
+	private static final int WARMUP_ROUNDS = 2000;
+	private static final int ROUNDS = 5000;
+
+	public static void main(String[] args) throws IOException, ParseMetadataException {
+		List<byte[]> corpus = new ArrayList<>();
+
+		if (args.length == 0) args = new String[] { Paths.get("src", "test", "resources", "testing", "parsing", "v1", "spec").toString() };
+
+		for (String arg : args) {
+			try (Stream<Path> stream = Files.walk(Paths.get(arg))) {
+				stream.filter(Files::isRegularFile).forEach(file -> {
+					try {
+						addToCorpus(file, corpus);
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				});
+			}
+		}
+
+		int fastCount = 0;
+
+		for (byte[] data : corpus) {
+			if (V1ModMetadataFastParser.parse(data, 0, data.length, false) != null) fastCount++;
+		}
+
+		System.out.printf("corpus: %d files, %d handled by the fast parser%n", corpus.size(), fastCount);
+
+		for (int i = 0; i < 3; i++) {
+			run("JsonReader", corpus, false, WARMUP_ROUNDS);
+			run("fast", corpus, true, WARMUP_ROUNDS);
+		}
+
+		run("JsonReader", corpus, false, ROUNDS);
+		run("fast", corpus, true, ROUNDS);
+	}
+
+	private static void addToCorpus(Path file, List<byte[]> corpus) throws IOException {
+		String name = file.getFileName().toString();
+
+		if (name.endsWith(".json")) {
+			corpus.add(Files.readAllBytes(file));
+		} else if (name.endsWith(".jar")) {
+			try (ZipFile zf = new ZipFile(file.toFile())) {
+				ZipEntry entry = zf.getEntry("fabric.mod.json");
+				if (entry == null) return;
+
+				try (DataInputStream is = new DataInputStream(zf.getInputStream(entry))) {
+					byte[] data = new byte[(int) entry.getSize()];
+					is.readFully(data);
+					corpus.add(data);
+				}
+			}
+		}
+	}
+
+	private static void run(String name, List<byte[]> corpus, boolean fast, int rounds) throws IOException, ParseMetadataException {
+		long blackhole = 0;
+		long startTime = System.nanoTime();
+
+		for (int i = 0; i < rounds; i++) {
+			for (byte[] data : corpus) {
+				LoaderModMetadata metadata;
+
+				if (fast) {
+					metadata = ModMetadataParser.readModMetadata(new ByteArrayInputStream(data), false);
+				} else {
+					metadata = ModMetadataParser.readModMetadataJson(new ByteArrayInputStream(data), false);
+				}
+
+				blackhole += metadata.getId().length();
+			}
+		}
+
+		long time = System.nanoTime() - startTime;
+
+		System.out.printf("%s: %.2f us per file (%d)%n", name, time * 1e-3 / ((long) rounds * corpus.size()), blackhole);
+	}
+}
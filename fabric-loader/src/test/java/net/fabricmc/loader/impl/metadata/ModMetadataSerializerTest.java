@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Test;
+
+import net.fabricmc.loader.api.metadata.Person;
+
+public class ModMetadataSerializerTest {
+	private static final Path SPEC_PATH = Paths.get("src", "test", "resources", "testing", "parsing", "v1", "spec");
+
+	/*
+	 * Serializing and deserializing has to preserve all metadata from the V1ModJsonParsingTests spec files
+	 */
+	@Test
+	public void testSpecRoundTrip() throws IOException, ParseMetadataException {
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(SPEC_PATH, "*.json")) {
+			for (Path file : ds) {
+				LoaderModMetadata expected;
+
+				try (InputStream is = Files.newInputStream(file)) {
+					expected = ModMetadataParser.readModMetadataJson(is, false);
+				}
+
+				byte[] data = ModMetadataSerializer.serialize(expected);
+				assertNotNull(data, "unsupported metadata in "+file);
+
+				LoaderModMetadata actual = ModMetadataSerializer.deserialize(data);
+
+				assertEquals(V1ModMetadataFastParserTest.describe(expected), V1ModMetadataFastParserTest.describe(actual), "metadata mismatch for "+file);
+				assertEquals(expected.getName(), actual.getName());
+				assertEquals(((V1ModMetadata) expected).hasRequires(), ((V1ModMetadata) actual).hasRequires(), "hasRequires mismatch for "+file);
+				assertPersonsEqual(expected.getAuthors(), actual.getAuthors(), file);
+				assertPersonsEqual(expected.getContributors(), actual.getContributors(), file);
+			}
+		}
+	}
+
+	/*
+	 * The deprecated requires field has to survive, it causes a warning once the metadata gets used
+	 */
+	@Test
+	public void testRequiresRoundTrip() throws IOException, ParseMetadataException {
+		String json = "{\"schemaVersion\": 1, \"id\": \"test\", \"version\": \"1.0.0\", \"requires\": {\"other\": \"*\"}}";
+		LoaderModMetadata expected = ModMetadataParser.readModMetadataJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), false);
+		LoaderModMetadata actual = ModMetadataSerializer.deserialize(ModMetadataSerializer.serialize(expected));
+
+		assertTrue(((V1ModMetadata) expected).hasRequires());
+		assertTrue(((V1ModMetadata) actual).hasRequires());
+		assertEquals(V1ModMetadataFastParserTest.describe(expected), V1ModMetadataFastParserTest.describe(actual));
+	}
+
+	/*
+	 * Corrupt data has to be reported as an IOException so callers can fall back to parsing the JSON
+	 */
+	@Test
+	public void testCorruptData() throws IOException, ParseMetadataException {
+		LoaderModMetadata metadata;
+
+		try (InputStream is = Files.newInputStream(SPEC_PATH.resolve("long.json"))) {
+			metadata = ModMetadataParser.readModMetadataJson(is, false);
+		}
+
+		byte[] data = ModMetadataSerializer.serialize(metadata);
+
+		for (int len = 0; len < data.length; len++) { // truncated
+			byte[] truncated = Arrays.copyOf(data, len);
+			assertThrows(IOException.class, () -> ModMetadataSerializer.deserialize(truncated));
+		}
+
+		byte[] invalidEnvironment = data.clone();
+		int pos = 1 + 4 + metadata.getId().length() + 4 + metadata.getVersion().getFriendlyString().length() + 4; // schema version, id, version, provides (empty)
+		invalidEnvironment[pos] = (byte) 0xff; // environment ordinal
+		assertThrows(IOException.class, () -> ModMetadataSerializer.deserialize(invalidEnvironment));
+	}
+
+	private static void assertPersonsEqual(Collection<Person> expected, Collection<Person> actual, Path file) {
+		assertEquals(expected.size(), actual.size(), "person count mismatch for "+file);
+
+		Iterator<Person> it = actual.iterator();
+
+		for (Person person : expected) {
+			Person other = it.next();
+
+			assertEquals(person.getName(), other.getName(), "person name mismatch for "+file);
+			assertEquals(person.getClass(), other.getClass(), "person type mismatch for "+person.getName()+" in "+file);
+			assertEquals(person.getContact().asMap(), other.getContact().asMap(), "contact mismatch for "+person.getName()+" in "+file);
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.loader.impl.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import net.fabricmc.api.EnvType;
+import net.fabricmc.loader.api.metadata.CustomValue;
+import net.fabricmc.loader.api.metadata.ModDependency;
+import net.fabricmc.loader.api.metadata.Person;
+
+public class V1ModMetadataFastParserTest {
+	private static final Path SPEC_PATH = Paths.get("src", "test", "resources", "testing", "parsing", "v1", "spec");
+
+	/*
+	 * The fast parser has to produce the same metadata as the regular parser for all valid files
+	 */
+	@Test
+	public void testSpecEquivalence() throws IOException, ParseMetadataException {
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(SPEC_PATH, "*.json")) {
+			for (Path file : ds) {
+				byte[] data = Files.readAllBytes(file);
+				LoaderModMetadata expected = ModMetadataParser.readModMetadataJson(new ByteArrayInputStream(data), false);
+				LoaderModMetadata actual = V1ModMetadataFastParser.parse(data, 0, data.length, false);
+
+				assertNotNull(actual, "fast parser rejected "+file);
+				assertEquals(describe(expected), describe(actual), "metadata mismatch for "+file);
+			}
+		}
+	}
+
+	/*
+	 * Anything the regular parser would warn about or reject has to be left to it
+	 */
+	@Test
+	public void testFallback() {
+		String[] inputs = {
+				"{\"schemaVersion\": 1, \"version\": \"1.0\"}", // missing id
+				"{\"id\": \"test\", \"version\": \"1.0\"}", // schema version 0
+				"{\"schemaVersion\": 2, \"id\": \"test\", \"version\": \"1.0\"}",
+				"{\"schemaVersion\": 1, \"id\": \"test\", \"version\": \"1.0\", \"side\": \"client\"}", // unsupported root entry
+				"{\"schemaVersion\": 1, \"id\": \"test\", \"version\": \"1.0\",}",
+				"{\"schemaVersion\": 1, \"id\": \"test\", \"version\": \"1.0\", \"name\": 'test'}",
+				"{\"schemaVersion\": 1, \"id\": \"test\", \"version\": \"1.0\", \"custom\": {\"a\": 01}}",
+		};
+
+		for (String input : inputs) {
+			byte[] data = input.getBytes(StandardCharsets.UTF_8);
+			assertNull(V1ModMetadataFastParser.parse(data, 0, data.length, false), input);
+		}
+	}
+
+	/*
+	 * Schema version after other content and escaped strings
+	 */
+	@Test
+	public void testLateSchemaVersion() {
+		byte[] data = "{\"id\": \"test\", \"version\": \"1.0\", \"name\": \"T\\u00e9st \\\"1\\\"\", \"schemaVersion\": 1}".getBytes(StandardCharsets.UTF_8);
+		LoaderModMetadata metadata = V1ModMetadataFastParser.parse(data, 0, data.length, false);
+
+		assertNotNull(metadata);
+		assertEquals("test", metadata.getId());
+		assertEquals("Tést \"1\"", metadata.getName());
+	}
+
+	static String describe(LoaderModMetadata metadata) {
+		List<Object> ret = new ArrayList<>();
+		ret.add(metadata.getSchemaVersion());
+		ret.add(metadata.getId());
+		ret.add(metadata.getVersion().getFriendlyString());
+		ret.add(metadata.getProvides());
+		ret.add(metadata.getEnvironment());
+
+		for (String key : new TreeSet<>(metadata.getEntrypointKeys())) {
+			for (EntrypointMetadata entry : metadata.getEntrypoints(key)) {
+				ret.add(key+"="+entry.getAdapter()+":"+entry.getValue());
+			}
+		}
+
+		for (NestedJarEntry jar : metadata.getJars()) {
+			ret.add(jar.getFile());
+		}
+
+		ret.add(metadata.getMixinConfigs(EnvType.CLIENT));
+		ret.add(metadata.getMixinConfigs(EnvType.SERVER));
+		ret.add(metadata.getAccessWidener());
+
+		for (ModDependency dep : metadata.getDependencies()) {
+			ret.add(dep.getKind()+" "+dep.getModId()+" "+dep.getVersionRequirements());
+		}
+
+		ret.add(metadata.getName());
+		ret.add(metadata.getDescription());
+
+		for (Person person : metadata.getAuthors()) {
+			ret.add(person.getName()+new TreeMap<>(person.getContact().asMap()));
+		}
+
+		for (Person person : metadata.getContributors()) {
+			ret.add(person.getName()+new TreeMap<>(person.getContact().asMap()));
+		}
+
+		ret.add(new TreeMap<>(metadata.getContact().asMap()));
+		ret.add(metadata.getLicense());
+
+		for (int size = 1; size <= 512; size *= 2) {
+			ret.add(metadata.getIconPath(size).orElse(null));
+		}
+
+		ret.add(new TreeMap<>(metadata.getLanguageAdapterDefinitions()));
+
+		for (Map.Entry<String, CustomValue> entry : new TreeMap<>(metadata.getCustomValues()).entrySet()) {
+			ret.add(entry.getKey()+"="+describe(entry.getValue()));
+		}
+
+		return ret.toString();
+	}
+
+	private static String describe(CustomValue value) {
+		switch (value.getType()) {
+		case OBJECT: {
+			StringBuilder sb = new StringBuilder("{");
+
+			for (Map.Entry<String, CustomValue> entry : value.getAsObject()) {
+				sb.append(entry.getKey()).append('=').append(describe(entry.getValue())).append(',');
+			}
+
+			return sb.append('}').toString();
+		}
+		case ARRAY: {
+			StringBuilder sb = new StringBuilder("[");
+
+			for (CustomValue entry : value.getAsArray()) {
+				sb.append(describe(entry)).append(',');
+			}
+
+			return sb.append(']').toString();
+		}
+		case STRING:
+			return '"'+value.getAsString()+'"';
+		case NUMBER:
+			return value.getAsNumber().toString();
+		case BOOLEAN:
+			return Boolean.toString(value.getAsBoolean());
+		default:
+			return "null";
+		}
+	}
+}
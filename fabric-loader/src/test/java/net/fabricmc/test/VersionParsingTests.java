@@ -59,6 +59,18 @@ public class VersionParsingTests {
 		}
 	}
 
+	/**
+	 * Compare two versions both ways, expecting the sign of a.compareTo(b).
+	 */
+	private static void testCompare(String a, String b, int expected) throws VersionParsingException {
+		SemanticVersionImpl versionA = new SemanticVersionImpl(a, true);
+		SemanticVersionImpl versionB = new SemanticVersionImpl(b, true);
+
+		if (Integer.signum(versionA.compareTo(versionB)) != expected || Integer.signum(versionB.compareTo(versionA)) != -expected) {
+			throw new RuntimeException("Test failed! "+a+" compared to "+b+" should be "+expected);
+		}
+	}
+
 	public static void main(String[] args) throws Exception {
 		// Test: Semantic version creation.
 		testTrue(tryParseSemantic("0.3.5", false));
@@ -318,5 +330,59 @@ public class VersionParsingTests {
 			testFalse(predicate.test(new SemanticVersionImpl("2.0.0", false)));
 			testFalse(predicate.test(new SemanticVersionImpl("2.0.0-beta.2", false)));
 		}
+
+		// Test: comparisons of short version cores (compared packed) and others (compared component wise)
+		testCompare("1.2.3", "1.2.4", -1);
+		testCompare("1.2.3", "1.2.3", 0);
+		testCompare("1.2", "1.2.0.0", 0);
+		testCompare("1.10.0", "1.9.0", 1);
+
+		// components of 65535 and above
+		testCompare("65535.0.0", "65534.0.0", 1);
+		testCompare("65535.0.0", "65535.0.0", 0);
+		testCompare("65536.0.0", "65535.99999.0", 1);
+		testCompare("1.65535", "1.65534", 1);
+		testCompare("0.70000", "0.65536", 1);
+		testCompare("1.0.0", "1.0." + Integer.MAX_VALUE, -1);
+
+		// more than 4 components
+		testCompare("1.2.3.4.5", "1.2.3.4.6", -1);
+		testCompare("1.2.3.4.5", "1.2.3.4.5", 0);
+		testCompare("1.2.3.4.0", "1.2.3.4.0.0", 0);
+		testCompare("2.0.0.0.0", "1.9.9.9.9", 1);
+
+		// wildcards
+		testCompare("1.x", "1.5.0", 0);
+		testCompare("1.x", "2.0.0", -1);
+		testCompare("1.2.x", "1.1.9", 1);
+		testCompare("1.x", "1.0.0-alpha.1", 0);
+
+		// equal cores with and without pre-release
+		testCompare("1.2.3-alpha.1", "1.2.3", -1);
+		testCompare("1.2.3-alpha.1", "1.2.3-alpha.2", -1);
+		testCompare("1.2.3-beta", "1.2.3-alpha.5", 1);
+		testCompare("1.2.3-rc.1", "1.2.3-rc.1", 0);
+		testCompare("1.2.3+build.1", "1.2.3+build.2", 0);
+		testCompare("1.2.4-alpha.1", "1.2.3", 1);
+		testCompare("65535.0.0-alpha.1", "65535.0.0", -1);
+		testCompare("1.2.3.4.5-rc.1", "1.2.3.4.5", -1);
+
+		// packed compared to unpacked
+		testCompare("65535.0.0", "1.0.0", 1);
+		testCompare("1.2.3.4.5", "1.2.3.4", 1);
+		testCompare("1.2.3.4.0", "1.2.3.4", 0);
+		testCompare("1.2.3.4.0-rc.1", "1.2.3.4", -1);
+		testCompare("1.2.3.4.0", "1.2.3.4-rc.1", 1);
+		testCompare("1.x", "1.65535.0", 0);
+		testCompare("1.0.0", "1.0.0.1", -1);
+
+		{
+			Predicate<Version> predicate = VersionPredicateParser.parse(">=65535.0.0 <65535.0.0.0.1");
+			testTrue(predicate.test(new SemanticVersionImpl("65535.0.0", false)));
+			testTrue(predicate.test(new SemanticVersionImpl("65535.0.0.0.0.9", false)));
+			testFalse(predicate.test(new SemanticVersionImpl("65534.65535.65535", false)));
+			testFalse(predicate.test(new SemanticVersionImpl("65535.0.0-rc.1", false)));
+			testFalse(predicate.test(new SemanticVersionImpl("65535.0.0.0.1", false)));
+		}
 	}
 }